@@ -0,0 +1,171 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite of the game logic on the bitboard core and on the original cell grid of ReferenceBoard.
+ * It measures the operations of GameBenchmark, so its numbers can be compared with the committed baselines in benchmarks/.
+ * The replay benchmarks take a whole recorded game per call; divide by its length, given in benchmarks/jmh.txt, for the time per ply.
+ * Run with mvn -P jmh package and java -jar target/benchmarks.jar.
+ * @author artur
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameLogicBenchmark {
+
+    private static final int SEARCH_DEPTH = 6;
+    private static final int SEARCH_TABLE_MEGABYTES = 16;
+    private static final long SEED = 20231017L;
+
+    @Param({"6", "8", "10"})
+    public int size;
+
+    private GameBenchmark.Game game;
+    private BitBoard middle;
+    private ReferenceBoard referenceMiddle;
+    private Board board;
+    private int[] moves;
+    private BitBoard start;
+    private BitBoard scratch;
+    private SplittableRandom random;
+    private AlphaBetaEngine engine;
+
+    /**
+     * Records the random game and sets up the positions in its middle.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = new GameBenchmark.Game(size, size);
+        middle = game.position(game.getLength() / 2);
+        referenceMiddle = game.referencePosition(game.getLength() / 2);
+        board = new Board(size, size);
+        moves = new int[middle.getMaxMoves()];
+        start = new BitBoard(size, size);
+        scratch = new BitBoard(size, size);
+        random = new SplittableRandom(SEED);
+        engine = new AlphaBetaEngine(new TranspositionTable(SEARCH_TABLE_MEGABYTES));
+        engine.setMaxDepth(SEARCH_DEPTH);
+    }
+
+    @Benchmark
+    public int construct() {
+        return new Board(size, size).getRows();
+    }
+
+    @Benchmark
+    public int constructReference() {
+        return new ReferenceBoard(size).getSize();
+    }
+
+    @Benchmark
+    public long replayGame() {
+        return game.replay();
+    }
+
+    @Benchmark
+    public long replayGameTyped() {
+        return game.replayTyped();
+    }
+
+    @Benchmark
+    public long replayGameReference() {
+        return game.replayReference();
+    }
+
+    @Benchmark
+    public long makeUnmakeGame() {
+        return game.makeUnmake();
+    }
+
+    @Benchmark
+    public Player gameResult() {
+        return middle.getWinner();
+    }
+
+    @Benchmark
+    public Player gameResultReference() {
+        return referenceMiddle.getGameResult();
+    }
+
+    @Benchmark
+    public boolean noneSelected() {
+        return board.noneSelected();
+    }
+
+    @Benchmark
+    public boolean noneSelectedReference() {
+        return referenceMiddle.noneSelected();
+    }
+
+    @Benchmark
+    public int legalMoves() {
+        return middle.generateMoves(moves);
+    }
+
+    @Benchmark
+    public long legalMovesReference() {
+        return GameBenchmark.referenceMoves(referenceMiddle);
+    }
+
+    @Benchmark
+    public long randomPlayout() {
+        return GameBenchmark.playout(start, scratch, moves, random);
+    }
+
+    @Benchmark
+    public long randomPlayoutReference() {
+        return GameBenchmark.referencePlayout(size, random);
+    }
+
+    /**
+     * Counts the nodes of the searches, reported by JMH as nodes per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SearchNodes {
+
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            nodes = 0;
+        }
+    }
+
+    /**
+     * Searches the starting position to a fixed depth with an empty table.
+     * @param counter
+     * @return the best move.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int search(SearchNodes counter) {
+        engine.getTable().clear();
+        SearchResult result = engine.findMove(start, Long.MAX_VALUE);
+        counter.nodes += result.getNodes();
+        return result.getMove();
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Computer player running a negamax alpha-beta search with iterative deepening under a wall-clock budget.
+ * Results are shared through a transposition table keyed by the Zobrist hash of the position.
+ * With several threads the search runs Lazy SMP: every thread searches its own copy of the position and they only meet in the table.
+ * The helper threads are kept in a pool between searches until the engine is closed.
+ * With an endgame tablebase, positions with few dolls are not searched but looked up, and so are the openings with an opening book.
+ * With a NetworkEvaluator of the board size the leaves are scored by the network instead of the material and advancement of the dolls.
+ * @author artur
+ */
+public class AlphaBetaEngine implements Engine, AutoCloseable {
+
+    public static final int WIN = 100_000;
+    public static final int MAX_PLY = 128;
+
+    private static final int INFINITY = WIN + 1;
+    private static final int CAPTURE_BONUS = 1_000;
+    private static final int DOLL_VALUE = 100;
+    private static final int TIME_CHECK_MASK = 1023;
+    private static final int TABLE_MOVE_BONUS = 1 << 20;
+    private static final int DEFAULT_TABLE_MEGABYTES = 16;
+    private static final int NETWORK_ORDER_DEPTH = 4;
+
+    private final TranspositionTable table;
+    private final int threads;
+    private final ExecutorService helpers;
+    private volatile AtomicBoolean stopped = new AtomicBoolean(true);
+    private volatile Tablebase tablebase;
+    private volatile NetworkEvaluator evaluator;
+    private final List<OpeningBook> books = new CopyOnWriteArrayList<>();
+    private int maxDepth = MAX_PLY - 1;
+
+    /**
+     * Public constructor initializes the engine with its own transposition table.
+     */
+    public AlphaBetaEngine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Public constructor initializes the engine with the given transposition table.
+     * @param table 
+     */
+    public AlphaBetaEngine(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /**
+     * Public constructor initializes the engine searching with the given number of threads sharing the given transposition table.
+     * @param table
+     * @param threads 
+     */
+    public AlphaBetaEngine(TranspositionTable table, int threads) {
+        this.table = table;
+        this.threads = Math.max(1, threads);
+        if (this.threads > 1) {
+            helpers = Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "alpha-beta helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     * Sets the endgame tablebase the search looks positions up in.
+     * @param tablebase tablebase of the board size that is played, or null to search every position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public NetworkEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Sets the learned evaluation used on boards of its size.
+     * @param evaluator network of the board size that is played, or null for the built-in evaluation.
+     */
+    public void setEvaluator(NetworkEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Adds an opening book the engine plays from before searching; books of several board sizes can be added.
+     * @param book
+     */
+    public void addOpeningBook(OpeningBook book) {
+        books.add(book);
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, Math.min(maxDepth, MAX_PLY - 1));
+    }
+
+    /**
+     * Searches deeper and deeper until the budget runs out, the maximum depth is reached or the game is decided.
+     * A position of an opening book or of the tablebase is answered at once with its book move or the move keeping its result.
+     * @param position
+     * @param budgetMillis
+     * @return the best move of the deepest completed iteration.
+     */
+    @Override
+    public SearchResult findMove(BitBoard position, long budgetMillis, AtomicBoolean stop) {
+        return findMove(position, budgetMillis, stop, null);
+    }
+
+    /**
+     * Searches like findMove and reports the best move of every completed iteration of the main thread while the search runs.
+     * The progress is called on the searching thread, so it must return quickly and hand the result over to another thread.
+     * @param position
+     * @param budgetMillis
+     * @param stop flag of this search; once it is set, the search returns as soon as possible.
+     * @param progress receives the move, score, depth, nodes and time so far after every iteration, or null.
+     * @return the best move of the deepest completed iteration.
+     */
+    public SearchResult findMove(BitBoard position, long budgetMillis, AtomicBoolean stop, Consumer<SearchResult> progress) {
+        long start = System.nanoTime();
+        stopped = stop;
+        for (OpeningBook book : books) {
+            int move = book.lookup(position);
+            if (move != Move.NONE) {
+                return new SearchResult(move, 0, 0, 0, System.nanoTime() - start);
+            }
+        }
+        Tablebase endgame = tablebase;
+        int result = endgame == null ? Tablebase.UNKNOWN : endgame.probe(position);
+        if (result != Tablebase.UNKNOWN) {
+            int move = endgame.bestMove(new BitBoard(position));
+            if (move != Move.NONE) {
+                return new SearchResult(move, tablebaseScore(result, 0), Tablebase.getDistance(result), 0, System.nanoTime() - start);
+            }
+        }
+        long deadline = budgetMillis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + budgetMillis * 1_000_000;
+        table.newSearch();
+        List<Searcher> searchers = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Searcher helper = new Searcher(new BitBoard(position), deadline, stop);
+            int startDepth = 1 + (i & 1);
+            searchers.add(helper);
+            futures.add(helpers.submit(() -> helper.iterate(startDepth)));
+        }
+        Searcher main = new Searcher(new BitBoard(position), deadline, stop);
+        main.progress = progress;
+        main.start = start;
+        main.iterate(1);
+        stop.set(true);
+
+        Searcher best = main;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+            Searcher helper = searchers.get(i);
+            if (helper.completedDepth > best.completedDepth) {
+                best = helper;
+            }
+        }
+        searchers.add(main);
+        long nodes = 0;
+        long probes = 0;
+        long hits = 0;
+        long stores = 0;
+        for (Searcher searcher : searchers) {
+            nodes += searcher.nodes;
+            probes += searcher.probes;
+            hits += searcher.hits;
+            stores += searcher.stores;
+        }
+        table.addCounts(probes, hits, stores);
+        long elapsed = System.nanoTime() - start;
+        Metrics.searchFinished(nodes, probes, hits, elapsed);
+        return new SearchResult(best.bestMove, best.bestScore, best.completedDepth, nodes, elapsed);
+    }
+
+    @Override
+    public void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Shuts the pool of helper threads down once a running search has finished; the engine cannot search with several threads afterwards.
+     */
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+    }
+
+    /**
+     * Checks whether the given score announces a won or lost game.
+     * @param score
+     * @return true if the score is a forced win or loss, otherwise, false.
+     */
+    public static boolean isDecisive(int score) {
+        return Math.abs(score) >= WIN - MAX_PLY;
+    }
+
+    /**
+     * Converts a tablebase result into a decisive score relative to the root.
+     * @param result
+     * @param ply
+     * @return score of the position from the point of view of the player whose turn it is.
+     */
+    private static int tablebaseScore(int result, int ply) {
+        int plies = Math.min(ply + Tablebase.getDistance(result), MAX_PLY - 1);
+        return Tablebase.isWin(result) ? WIN - plies : -WIN + plies;
+    }
+
+    /**
+     * Converts a score relative to the root into one relative to the stored position, so decisive scores stay valid in other move orders.
+     * @param score
+     * @param ply
+     * @return score to store.
+     */
+    private static int toTable(int score, int ply) {
+        return isDecisive(score) ? score + Integer.signum(score) * ply : score;
+    }
+
+    /**
+     * Converts a stored score back to one relative to the root.
+     * @param score
+     * @param ply
+     * @return score to use in the search.
+     */
+    private static int fromTable(int score, int ply) {
+        return isDecisive(score) ? score - Integer.signum(score) * ply : score;
+    }
+
+    /**
+     * Search state of one thread: its own copy of the position with its undo stack, and move buffers for every ply.
+     */
+    private final class Searcher {
+
+        private final BitBoard position;
+        private final int rows;
+        private final int columns;
+        private final long deadline;
+        private final AtomicBoolean stop;
+        private final Tablebase tablebase;
+        private final NetworkEvaluator.Accumulator accumulator;
+        private final int[][] moves;
+        private final int[][] orders;
+        private final int[] firstValues;
+        private final int[] secondValues;
+        private long nodes;
+        private long probes;
+        private long hits;
+        private long stores;
+        private int bestMove = Move.NONE;
+        private int bestScore;
+        private int completedDepth;
+        private Consumer<SearchResult> progress;
+        private long start;
+
+        /**
+         * Public constructor initializes the searcher of the given position.
+         * @param position copy owned by the searcher.
+         * @param deadline System.nanoTime() at which the search stops.
+         * @param stop flag of the search shared by all its threads.
+         */
+        public Searcher(BitBoard position, long deadline, AtomicBoolean stop) {
+            this.position = position;
+            this.rows = position.getRows();
+            this.columns = position.getColumns();
+            this.deadline = deadline;
+            this.stop = stop;
+            this.tablebase = AlphaBetaEngine.this.tablebase;
+            NetworkEvaluator network = evaluator;
+            if (network != null && network.fits(position)) {
+                accumulator = network.newAccumulator(MAX_PLY, position.getMaxMoves());
+                accumulator.reset(position);
+            } else {
+                accumulator = null;
+            }
+            moves = new int[MAX_PLY][position.getMaxMoves()];
+            orders = new int[MAX_PLY][position.getMaxMoves()];
+            firstValues = new int[position.getSquares()];
+            secondValues = new int[position.getSquares()];
+            for (int square = 0; square < position.getSquares(); square++) {
+                int row = square / columns;
+                firstValues[square] = dollValue(row);
+                secondValues[square] = dollValue(rows - 1 - row);
+            }
+        }
+
+        /**
+         * Runs the iterative deepening at the root; helper threads start one ply deeper to spread over the tree.
+         * @param startDepth
+         */
+        public void iterate(int startDepth) {
+            int[] rootMoves = moves[0];
+            int count = position.generateMoves(rootMoves);
+            if (count == 0) {
+                return;
+            }
+            long entry = probe(position.getHash());
+            orderMoves(0, count, entry == TranspositionTable.MISS ? Move.NONE : TranspositionTable.move(entry), maxDepth);
+            bestMove = rootMoves[0];
+            for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+                int alpha = -INFINITY;
+                int bestIndex = 0;
+                for (int i = 0; i < count; i++) {
+                    play(rootMoves[i]);
+                    int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+                    takeBack();
+                    if (stop.get()) {
+                        break;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        bestIndex = i;
+                    }
+                }
+                if (stop.get()) {
+                    break;
+                }
+                bestMove = rootMoves[bestIndex];
+                bestScore = alpha;
+                completedDepth = depth;
+                store(position.getHash(), bestMove, toTable(alpha, 0), depth, TranspositionTable.EXACT);
+                System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+                rootMoves[0] = bestMove;
+                if (progress != null) {
+                    progress.accept(new SearchResult(bestMove, bestScore, depth, nodes, System.nanoTime() - start));
+                }
+                if (isDecisive(alpha)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Negamax search with alpha-beta pruning.
+         * @param depth remaining depth.
+         * @param alpha
+         * @param beta
+         * @param ply distance from the root.
+         * @return score of the position from the point of view of the player whose turn it is.
+         */
+        private int negamax(int depth, int alpha, int beta, int ply) {
+            if ((++nodes & TIME_CHECK_MASK) == 0 && System.nanoTime() >= deadline) {
+                stop.set(true);
+            }
+            if (stop.get()) {
+                return 0;
+            }
+            if (position.getWinner() != Player.NONE) {
+                return -WIN + ply;
+            }
+            if (tablebase != null) {
+                int result = tablebase.probe(position);
+                if (result != Tablebase.UNKNOWN) {
+                    return tablebaseScore(result, ply);
+                }
+            }
+            if (depth == 0 || ply == MAX_PLY - 1) {
+                return evaluate();
+            }
+            long key = position.getHash();
+            long entry = probe(key);
+            int tableMove = Move.NONE;
+            if (entry != TranspositionTable.MISS) {
+                tableMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+            int[] list = moves[ply];
+            int count = position.generateMoves(list);
+            if (count == 0) {
+                return -WIN + ply;
+            }
+            orderMoves(ply, count, tableMove, depth);
+            int originalAlpha = alpha;
+            int best = list[0];
+            for (int i = 0; i < count; i++) {
+                play(list[i]);
+                int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                takeBack();
+                if (stop.get()) {
+                    return 0;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    best = list[i];
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+            int bound = alpha >= beta ? TranspositionTable.LOWER_BOUND : alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+            store(key, best, toTable(alpha, ply), depth, bound);
+            return alpha;
+        }
+
+        /**
+         * Looks up the given position in the table and counts the probe and the hit in the fields of the searcher.
+         * @param key
+         * @return the packed entry, or MISS.
+         */
+        private long probe(long key) {
+            long entry = table.probe(key);
+            probes++;
+            if (entry != TranspositionTable.MISS) {
+                hits++;
+            }
+            return entry;
+        }
+
+        /**
+         * Stores a result in the table and counts it in the fields of the searcher if it was written.
+         * @param key
+         * @param move
+         * @param score
+         * @param depth
+         * @param bound
+         */
+        private void store(long key, int move, int score, int depth, int bound) {
+            if (table.store(key, move, score, depth, bound)) {
+                stores++;
+            }
+        }
+
+        /**
+         * Makes a move on the position of the searcher and updates the accumulator of the network, if there is one.
+         * @param move
+         */
+        private void play(int move) {
+            if (accumulator != null) {
+                accumulator.push(position, move);
+            }
+            position.makeMove(move);
+        }
+
+        /**
+         * Takes back the last move made by play.
+         */
+        private void takeBack() {
+            position.unmakeMove();
+            if (accumulator != null) {
+                accumulator.pop();
+            }
+        }
+
+        /**
+         * Sorts the moves of the given ply so that the move from the transposition table comes first, followed by
+         * the captures and the most advanced dolls; far enough from the leaves, the network scores all moves in one batch
+         * and orders them instead, which pays off only where the subtrees are large.
+         * @param ply
+         * @param count
+         * @param tableMove
+         * @param depth remaining depth.
+         */
+        private void orderMoves(int ply, int count, int tableMove, int depth) {
+            int[] list = moves[ply];
+            int[] order = orders[ply];
+            boolean firstTurn = position.firstTurn();
+            boolean network = accumulator != null && depth >= NETWORK_ORDER_DEPTH;
+            if (network) {
+                accumulator.scoreMoves(position, list, count, order);
+            }
+            for (int i = 0; i < count; i++) {
+                int to = Move.to(list[i]);
+                int row = to / columns;
+                if (!network) {
+                    order[i] = (position.isFree(to) ? 0 : CAPTURE_BONUS) + (firstTurn ? row : rows - 1 - row);
+                }
+                order[i] += list[i] == tableMove ? TABLE_MOVE_BONUS : 0;
+            }
+            for (int i = 1; i < count; i++) {
+                int move = list[i];
+                int key = order[i];
+                int j = i - 1;
+                while (j >= 0 && order[j] < key) {
+                    list[j + 1] = list[j];
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                list[j + 1] = move;
+                order[j + 1] = key;
+            }
+        }
+
+        /**
+         * Evaluates the position by the network, if there is one, otherwise, by the material and the advancement of the dolls.
+         * @return score from the point of view of the player whose turn it is.
+         */
+        private int evaluate() {
+            if (accumulator != null) {
+                return accumulator.score(position.firstTurn());
+            }
+            int score = 0;
+            for (int word = 0; word < position.getWords(); word++) {
+                long dolls = position.getWord(true, word);
+                while (dolls != 0) {
+                    score += firstValues[(word << 6) + Long.numberOfTrailingZeros(dolls)];
+                    dolls &= dolls - 1;
+                }
+                dolls = position.getWord(false, word);
+                while (dolls != 0) {
+                    score -= secondValues[(word << 6) + Long.numberOfTrailingZeros(dolls)];
+                    dolls &= dolls - 1;
+                }
+            }
+            return position.firstTurn() ? score : -score;
+        }
+    }
+
+    /**
+     * Values a doll by how far it has advanced towards the opponent's side.
+     * @param progress number of rows the doll is away from its own edge.
+     * @return value of the doll.
+     */
+    private static int dollValue(int progress) {
+        return DOLL_VALUE + 3 * progress * progress;
+    }
+}
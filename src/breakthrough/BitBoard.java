@@ -0,0 +1,703 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact representation of a game position: one occupancy mask per player, one bit per square.
+ * The board has rows x columns squares and the square of a cell is row * columns + column.
+ * Boards of up to 64 squares fit into a single word and generate their moves with whole-mask shifts; larger boards use several words.
+ * @author artur
+ */
+public final class BitBoard {
+
+    public static final int MIN_ROWS = 4;
+    public static final int MIN_COLUMNS = 2;
+    public static final int MAX_SQUARES = 1 << 16;
+
+    private static final long CAPTURED_FIRST = 1L << 32;
+    private static final long CAPTURED_SECOND = 2L << 32;
+    private static final long FIRST_TURN = 1L << 34;
+    private static final int WINNER_SHIFT = 35;
+    private static final Player[] PLAYERS = Player.values();
+    private static final long ZOBRIST_SEED = 0x9E3779B97F4A7C15L;
+    private static final int UNDO_CAPACITY = 64;
+    private static final Map<Integer, Geometry> GEOMETRIES = new ConcurrentHashMap<>();
+
+    private final int rows;
+    private final int columns;
+    private final int squares;
+    private final long[] first;
+    private final long[] second;
+    private final long[] topRow;
+    private final long[] bottomRow;
+    private final long[] leftColumn;
+    private final long[] rightColumn;
+    private final long[] zobrist;
+    private final long boardMask;
+    private boolean firstTurn;
+    private int firstCount;
+    private int secondCount;
+    private Player winner;
+    private long hash;
+    private long[] undo;
+    private int undoCount;
+
+    /**
+     * Public constructor initializes the starting position of a square board of the given size.
+     * @param size
+     */
+    public BitBoard(int size) {
+        this(size, size);
+    }
+
+    /**
+     * Public constructor initializes the starting position of a board with the given number of rows and columns.
+     * @param rows at least MIN_ROWS, so the starting rows of the players do not overlap.
+     * @param columns at least MIN_COLUMNS.
+     */
+    public BitBoard(int rows, int columns) {
+        checkSize(rows, columns);
+        this.rows = rows;
+        this.columns = columns;
+        this.squares = rows * columns;
+        Geometry geometry = GEOMETRIES.computeIfAbsent(rows << 16 | columns, key -> new Geometry(rows, columns));
+        first = new long[geometry.words];
+        second = new long[geometry.words];
+        topRow = geometry.topRow;
+        bottomRow = geometry.bottomRow;
+        leftColumn = geometry.leftColumn;
+        rightColumn = geometry.rightColumn;
+        zobrist = geometry.zobrist;
+        boardMask = squares == 64 ? -1L : (1L << squares) - 1;
+        undo = new long[UNDO_CAPACITY];
+        reset();
+    }
+
+    /**
+     * Copy constructor; the row and column masks and the Zobrist keys never change, so they are shared with the original.
+     * @param other
+     */
+    public BitBoard(BitBoard other) {
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.squares = other.squares;
+        this.first = other.first.clone();
+        this.second = other.second.clone();
+        this.topRow = other.topRow;
+        this.bottomRow = other.bottomRow;
+        this.leftColumn = other.leftColumn;
+        this.rightColumn = other.rightColumn;
+        this.zobrist = other.zobrist;
+        this.boardMask = other.boardMask;
+        this.hash = other.hash;
+        this.firstTurn = other.firstTurn;
+        this.firstCount = other.firstCount;
+        this.secondCount = other.secondCount;
+        this.winner = other.winner;
+        this.undo = other.undo.clone();
+        this.undoCount = other.undoCount;
+    }
+
+    /**
+     * Checks that a board of the given size can be played on without building it.
+     * @param rows
+     * @param columns
+     * @throws IllegalArgumentException if there are fewer than MIN_ROWS rows or MIN_COLUMNS columns, or more than MAX_SQUARES squares.
+     */
+    public static void checkSize(int rows, int columns) {
+        if (rows < MIN_ROWS || columns < MIN_COLUMNS || (long) rows * columns > MAX_SQUARES) {
+            throw new IllegalArgumentException("Unsupported board size: " + rows + "x" + columns);
+        }
+    }
+
+    /**
+     * Sets up the starting position again and empties the undo stack.
+     */
+    public void reset() {
+        Arrays.fill(first, 0);
+        Arrays.fill(second, 0);
+        for (int column = 0; column < columns; column++) {
+            set(first, square(0, column));
+            set(first, square(1, column));
+
+            set(second, square(rows - 2, column));
+            set(second, square(rows - 1, column));
+        }
+        firstTurn = true;
+        firstCount = 2 * columns;
+        secondCount = 2 * columns;
+        winner = Player.NONE;
+        undoCount = 0;
+        hash = computeHash();
+    }
+
+    /**
+     * Sets up an arbitrary position of a board of at most 64 squares and empties the undo stack.
+     * A doll on the opponent's edge or a player without dolls decides the game as if the position had been reached by moves.
+     * @param firstMask squares of the FIRST player.
+     * @param secondMask squares of the SECOND player; they must not overlap with the first.
+     * @param firstTurn
+     */
+    void setPosition(long firstMask, long secondMask, boolean firstTurn) {
+        if (first.length != 1 || (firstMask & secondMask) != 0 || ((firstMask | secondMask) & ~boardMask) != 0) {
+            throw new IllegalArgumentException("Not a position of this board!");
+        }
+        first[0] = firstMask;
+        second[0] = secondMask;
+        this.firstTurn = firstTurn;
+        firstCount = Long.bitCount(firstMask);
+        secondCount = Long.bitCount(secondMask);
+        boolean firstWon = (firstMask & bottomRow[0]) != 0 || secondCount == 0;
+        boolean secondWon = (secondMask & topRow[0]) != 0 || firstCount == 0;
+        if (firstWon && (!secondWon || !firstTurn)) {
+            winner = Player.FIRST;
+        } else if (secondWon) {
+            winner = Player.SECOND;
+        } else {
+            winner = Player.NONE;
+        }
+        undoCount = 0;
+        hash = computeHash();
+    }
+
+    /**
+     * Overwrites one word of both occupancy masks; the position is consistent again after restoreState.
+     * @param word
+     * @param firstMask bits of the FIRST player on squares 64 * word to 64 * word + 63.
+     * @param secondMask bits of the SECOND player on the same squares.
+     */
+    void setWords(int word, long firstMask, long secondMask) {
+        first[word] = firstMask;
+        second[word] = secondMask;
+    }
+
+    /**
+     * Completes a position written word by word with setWords, e.g. from a PositionSnapshot, and empties the undo stack.
+     * @param firstTurn
+     * @param winner result saved with the masks.
+     * @param hash Zobrist key saved with the masks.
+     */
+    void restoreState(boolean firstTurn, Player winner, long hash) {
+        int firstDolls = 0;
+        int secondDolls = 0;
+        for (int word = 0; word < first.length; word++) {
+            firstDolls += Long.bitCount(first[word]);
+            secondDolls += Long.bitCount(second[word]);
+        }
+        this.firstTurn = firstTurn;
+        this.winner = winner;
+        this.hash = hash;
+        firstCount = firstDolls;
+        secondCount = secondDolls;
+        undoCount = 0;
+    }
+
+    /**
+     * Overwrites this position with the given position of the same size without allocating.
+     * @param other
+     */
+    public void copyFrom(BitBoard other) {
+        if (other.rows != rows || other.columns != columns) {
+            throw new IllegalArgumentException("The boards differ in size!");
+        }
+        System.arraycopy(other.first, 0, first, 0, first.length);
+        System.arraycopy(other.second, 0, second, 0, second.length);
+        firstTurn = other.firstTurn;
+        firstCount = other.firstCount;
+        secondCount = other.secondCount;
+        winner = other.winner;
+        hash = other.hash;
+        if (undo.length < other.undoCount) {
+            undo = new long[other.undo.length];
+        }
+        System.arraycopy(other.undo, 0, undo, 0, other.undoCount);
+        undoCount = other.undoCount;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Checks whether the board has as many rows as columns.
+     * @return true for a square board, otherwise, false.
+     */
+    public boolean isSquare() {
+        return rows == columns;
+    }
+
+    public int getSquares() {
+        return squares;
+    }
+
+    int getWords() {
+        return first.length;
+    }
+
+    /**
+     * Gets one word of the occupancy mask of the given player.
+     * @param firstPlayer true for the mask of the FIRST player.
+     * @param word
+     * @return bits of squares 64 * word to 64 * word + 63.
+     */
+    long getWord(boolean firstPlayer, int word) {
+        return firstPlayer ? first[word] : second[word];
+    }
+
+    /**
+     * Gets the capacity a move buffer needs to hold every legal move of any position of this size.
+     * @return three moves for each of the 2 * columns dolls.
+     */
+    public int getMaxMoves() {
+        return 6 * columns;
+    }
+
+    /**
+     * Returns Boolean value to define whose turn it is.
+     * @return true if it's the turn of the first player, otherwise, false.
+     */
+    public boolean firstTurn() {
+        return firstTurn;
+    }
+
+    /**
+     * Switches the turns.
+     */
+    public void changeTurn() {
+        firstTurn = !firstTurn;
+        hash ^= zobrist[2 * squares];
+    }
+
+    /**
+     * Gets the Zobrist key of the position; it is updated incrementally by every move and turn change.
+     * Boards of the same size share the keys, so equal positions have equal hashes across instances and runs.
+     * @return 64-bit hash of the dolls and the turn.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the Zobrist key of the position from scratch.
+     * @return 64-bit hash of the dolls and the turn.
+     */
+    long computeHash() {
+        long result = firstTurn ? 0 : zobrist[2 * squares];
+        for (int square = 0; square < squares; square++) {
+            if (test(first, square)) {
+                result ^= key(true, square);
+            } else if (test(second, square)) {
+                result ^= key(false, square);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the given row and column to the index of the square.
+     * @param row
+     * @param column
+     * @return index of the square.
+     */
+    public int square(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Gets the owner of the given cell.
+     * @param row
+     * @param column
+     * @return FIRST, SECOND or NONE.
+     */
+    public Player getOwner(int row, int column) {
+        int square = square(row, column);
+        if (test(first, square)) {
+            return Player.FIRST;
+        }
+        if (test(second, square)) {
+            return Player.SECOND;
+        }
+        return Player.NONE;
+    }
+
+    /**
+     * Checks whether the given square is free.
+     * @param square
+     * @return true if neither player occupies the square, otherwise, false.
+     */
+    public boolean isFree(int square) {
+        int word = square >>> 6;
+        return ((first[word] | second[word]) & (1L << square)) == 0;
+    }
+
+    /**
+     * Checks whether the given square is occupied by the given player.
+     * @param square
+     * @param player
+     * @return true if the square belongs to the player, otherwise, false.
+     */
+    public boolean isOccupiedBy(int square, Player player) {
+        if (player == Player.FIRST) {
+            return test(first, square);
+        }
+        if (player == Player.SECOND) {
+            return test(second, square);
+        }
+        return isFree(square);
+    }
+
+    /**
+     * Releases the previous square and occupies the new square by the given player; a doll of the opponent on the new square is beaten.
+     * A doll of the player moving onto a square it does not hold takes the same short path as makeMove.
+     * @param from
+     * @param to
+     * @param firstPlayer true if the new square is occupied by the FIRST player.
+     */
+    public void movePiece(int from, int to, boolean firstPlayer) {
+        long[] own = firstPlayer ? first : second;
+        long[] opponent = firstPlayer ? second : first;
+        if (test(own, from) && !test(own, to)) {
+            int captured = bit(opponent, to);
+            own[from >>> 6] &= ~(1L << from);
+            opponent[to >>> 6] &= ~(1L << to);
+            own[to >>> 6] |= 1L << to;
+            hash ^= key(firstPlayer, from) ^ key(firstPlayer, to) ^ (key(!firstPlayer, to) & -(long) captured);
+            if (firstPlayer) {
+                secondCount -= captured;
+            } else {
+                firstCount -= captured;
+            }
+            updateWinner(to, firstPlayer);
+            return;
+        }
+        int ownDelta = 1 - bit(own, to) - bit(own, from);
+        int opponentDelta = -bit(opponent, to) - bit(opponent, from);
+        hash ^= (key(firstPlayer, from) & -(long) bit(own, from))
+                ^ (key(!firstPlayer, from) & -(long) bit(opponent, from))
+                ^ (key(!firstPlayer, to) & -(long) bit(opponent, to))
+                ^ (key(firstPlayer, to) & -(long) (1 - bit(own, to)));
+        own[from >>> 6] &= ~(1L << from);
+        opponent[from >>> 6] &= ~(1L << from);
+        opponent[to >>> 6] &= ~(1L << to);
+        own[to >>> 6] |= 1L << to;
+        if (firstPlayer) {
+            firstCount += ownDelta;
+            secondCount += opponentDelta;
+        } else {
+            secondCount += ownDelta;
+            firstCount += opponentDelta;
+        }
+        updateWinner(to, firstPlayer);
+    }
+
+    /**
+     * Applies the given legal move of the player whose turn it is, records it on the undo stack and switches the turns.
+     * @param move encoded move.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long[] own = firstTurn ? first : second;
+        long[] opponent = firstTurn ? second : first;
+        int captured = bit(opponent, to);
+        if (undoCount == undo.length) {
+            undo = Arrays.copyOf(undo, undo.length * 2);
+        }
+        undo[undoCount++] = (move & 0xFFFFFFFFL)
+                | (captured == 0 ? 0 : firstTurn ? CAPTURED_SECOND : CAPTURED_FIRST)
+                | (firstTurn ? FIRST_TURN : 0)
+                | ((long) winner.ordinal() << WINNER_SHIFT);
+        own[from >>> 6] &= ~(1L << from);
+        opponent[to >>> 6] &= ~(1L << to);
+        own[to >>> 6] |= 1L << to;
+        hash ^= key(firstTurn, from) ^ key(firstTurn, to) ^ (key(!firstTurn, to) & -(long) captured) ^ zobrist[2 * squares];
+        if (firstTurn) {
+            secondCount -= captured;
+        } else {
+            firstCount -= captured;
+        }
+        updateWinner(to, firstTurn);
+        firstTurn = !firstTurn;
+    }
+
+    /**
+     * Takes back the last move made by makeMove, restoring the beaten doll, the turn and the result.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("There is no move to take back!");
+        }
+        long entry = undo[--undoCount];
+        int from = Move.from((int) entry);
+        int to = Move.to((int) entry);
+        firstTurn = (entry & FIRST_TURN) != 0;
+        winner = PLAYERS[(int) (entry >>> WINNER_SHIFT) & 3];
+        long[] own = firstTurn ? first : second;
+        own[to >>> 6] &= ~(1L << to);
+        own[from >>> 6] |= 1L << from;
+        hash ^= key(firstTurn, from) ^ key(firstTurn, to) ^ zobrist[2 * squares];
+        if ((entry & CAPTURED_FIRST) != 0) {
+            set(first, to);
+            firstCount++;
+            hash ^= key(true, to);
+        } else if ((entry & CAPTURED_SECOND) != 0) {
+            set(second, to);
+            secondCount++;
+            hash ^= key(false, to);
+        }
+    }
+
+    /**
+     * Gets a move recorded on the undo stack.
+     * @param index from 0 for the oldest move to getUndoCount() - 1 for the last one.
+     * @return the encoded move.
+     */
+    public int getMove(int index) {
+        if (index < 0 || index >= undoCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (int) undo[index];
+    }
+
+    /**
+     * Gets the number of moves that can be taken back.
+     * @return size of the undo stack.
+     */
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Gets the current state of the game; the player who reaches the opponent's side or beats all dolls of the opponent wins.
+     * The result is maintained by every move, so this is a constant-time query.
+     * @return SECOND if the second player wins, FIRST if the first player wins, NONE if the game is still in progress.
+     */
+    public Player getWinner() {
+        return winner;
+    }
+
+    /**
+     * Gets the number of dolls the given player has left on the board.
+     * @param player
+     * @return number of dolls of FIRST or SECOND.
+     */
+    public int getDollCount(Player player) {
+        return player == Player.FIRST ? firstCount : player == Player.SECOND ? secondCount : squares - firstCount - secondCount;
+    }
+
+    /**
+     * Checks whether a doll of the given player reaching the given square wins the game.
+     * @param square
+     * @param firstPlayer
+     * @return true if the square is on the opponent's edge, otherwise, false.
+     */
+    public boolean isGoal(int square, boolean firstPlayer) {
+        return test(firstPlayer ? bottomRow : topRow, square);
+    }
+
+    /**
+     * Sets the winner after a move of the given player onto the given square, unless the game has already been decided.
+     * @param to
+     * @param firstPlayer
+     */
+    private void updateWinner(int to, boolean firstPlayer) {
+        if (winner != Player.NONE) {
+            return;
+        }
+        if (isGoal(to, firstPlayer) || (firstPlayer ? secondCount : firstCount) == 0) {
+            winner = firstPlayer ? Player.FIRST : Player.SECOND;
+        }
+    }
+
+    /**
+     * Writes all legal moves of the player whose turn it is into the given buffer.
+     * For every doll the moves are written in the order left diagonal, forward, right diagonal.
+     * @param moves buffer of at least getMaxMoves() elements.
+     * @return the number of moves written.
+     */
+    public int generateMoves(int[] moves) {
+        if (first.length == 1) {
+            return generateSingleWordMoves(moves);
+        }
+        long[] own = firstTurn ? first : second;
+        int forward = firstTurn ? columns : -columns;
+        int count = 0;
+        for (int word = 0; word < own.length; word++) {
+            long dolls = own[word];
+            while (dolls != 0) {
+                int from = (word << 6) + Long.numberOfTrailingZeros(dolls);
+                dolls &= dolls - 1;
+                int to = from + forward;
+                if (to < 0 || to >= squares) {
+                    continue;
+                }
+                if (!test(leftColumn, from) && !test(own, to - 1)) {
+                    moves[count++] = Move.encode(from, to - 1);
+                }
+                if (isFree(to)) {
+                    moves[count++] = Move.encode(from, to);
+                }
+                if (!test(rightColumn, from) && !test(own, to + 1)) {
+                    moves[count++] = Move.encode(from, to + 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates the moves of a board that fits into one word: the target squares of all dolls are computed with three shifts of the whole mask.
+     * @param moves
+     * @return the number of moves written.
+     */
+    private int generateSingleWordMoves(int[] moves) {
+        long own = firstTurn ? first[0] : second[0];
+        long empty = ~(first[0] | second[0]) & boardMask;
+        long notOwn = ~own & boardMask;
+        long left;
+        long forward;
+        long right;
+        int step;
+        if (firstTurn) {
+            left = ((own & ~leftColumn[0]) << (columns - 1)) & notOwn;
+            forward = (own << columns) & empty;
+            right = ((own & ~rightColumn[0]) << (columns + 1)) & notOwn;
+            step = columns;
+        } else {
+            left = ((own & ~leftColumn[0]) >>> (columns + 1)) & notOwn;
+            forward = (own >>> columns) & empty;
+            right = ((own & ~rightColumn[0]) >>> (columns - 1)) & notOwn;
+            step = -columns;
+        }
+        int count = 0;
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            int to = from + step;
+            if (to < 0 || to >= squares) {
+                continue;
+            }
+            if (!test(leftColumn, from) && (left & (1L << (to - 1))) != 0) {
+                moves[count++] = Move.encode(from, to - 1);
+            }
+            if ((forward & (1L << to)) != 0) {
+                moves[count++] = Move.encode(from, to);
+            }
+            if (!test(rightColumn, from) && (right & (1L << (to + 1))) != 0) {
+                moves[count++] = Move.encode(from, to + 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the given move is legal for the player whose turn it is.
+     * @param move encoded move.
+     * @return true if the move is legal, otherwise, false.
+     */
+    public boolean isLegal(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long[] own = firstTurn ? first : second;
+        if (from >= squares || to >= squares || !test(own, from)) {
+            return false;
+        }
+        int shift = to - from - (firstTurn ? columns : -columns);
+        if (shift == 0) {
+            return isFree(to);
+        }
+        if (shift == -1) {
+            return !test(leftColumn, from) && !test(own, to);
+        }
+        if (shift == 1) {
+            return !test(rightColumn, from) && !test(own, to);
+        }
+        return false;
+    }
+
+    /**
+     * Draws the board as text: one line per row with O for the FIRST player, X for the SECOND player and a dot for a free square.
+     * @return the rows of the board.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder((columns + 1) * rows);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Player owner = getOwner(row, column);
+                text.append(owner == Player.FIRST ? 'O' : owner == Player.SECOND ? 'X' : '.');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private long key(boolean firstPlayer, int square) {
+        return zobrist[(square << 1) | (firstPlayer ? 0 : 1)];
+    }
+
+    private static boolean test(long[] mask, int square) {
+        return (mask[square >>> 6] & (1L << square)) != 0;
+    }
+
+    private static int bit(long[] mask, int square) {
+        return (int) (mask[square >>> 6] >>> square) & 1;
+    }
+
+    private static void set(long[] mask, int square) {
+        mask[square >>> 6] |= 1L << square;
+    }
+
+    /**
+     * Row and column masks and Zobrist keys of one board size, computed once and shared by every board of that size.
+     */
+    private static final class Geometry {
+
+        private final int words;
+        private final long[] topRow;
+        private final long[] bottomRow;
+        private final long[] leftColumn;
+        private final long[] rightColumn;
+        private final long[] zobrist;
+
+        /**
+         * Public constructor computes the masks and keys of the given board size.
+         * @param rows
+         * @param columns
+         */
+        public Geometry(int rows, int columns) {
+            int squares = rows * columns;
+            words = (squares + 63) >>> 6;
+            topRow = new long[words];
+            bottomRow = new long[words];
+            leftColumn = new long[words];
+            rightColumn = new long[words];
+            zobrist = new long[2 * squares + 1];
+            SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+            for (int i = 0; i < zobrist.length; i++) {
+                zobrist[i] = random.nextLong();
+            }
+
+            for (int column = 0; column < columns; column++) {
+                set(topRow, column);
+                set(bottomRow, (rows - 1) * columns + column);
+            }
+
+            for (int row = 0; row < rows; row++) {
+                set(leftColumn, row * columns);
+                set(rightColumn, row * columns + columns - 1);
+            }
+        }
+    }
+}
@@ -4,6 +4,11 @@
  */
 package breakthrough;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
 /**
  *
  * @author artur
@@ -15,40 +20,130 @@ public class Board {
     public static final String LEFT = "←";
     public static final String RIGHT = "→";
 
-    private final Cell[][] board;
-    private final int size;
-    private boolean firstTurn;
+    private static final int HISTORY_CAPACITY = 64;
+    private static final PositionSnapshot[] NO_SNAPSHOTS = {};
+
+    private final BitBoard position;
+    private int selectedSquare;
+    private final List<BoardListener> listeners;
+    private int[] history;
+    private int plies;
+    private int recordedPlies;
+    private int stackedPlies;
+    private PositionSnapshot[] timeline;
+    private int snapshotPlies;
+    private final int rows;
+    private final int columns;
 
     /**
      * Public constructor initializes the logic board of the game based on the given size.
      * @param size 
      */
     public Board(int size) {
-        this.size = size;
-        board = new Cell[size][size];
-        firstTurn = true;
+        this(size, size);
+    }
+
+    /**
+     * Public constructor initializes the logic board of the game with the given number of rows and columns.
+     * @param rows
+     * @param columns 
+     */
+    public Board(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        position = new BitBoard(rows, columns);
+        selectedSquare = -1;
+        listeners = new ArrayList<>();
+        history = new int[HISTORY_CAPACITY];
+        timeline = NO_SNAPSHOTS;
+    }
 
-        for (int column = 0; column < size; column++) {
-            board[0][column] = new Cell(Player.FIRST);
-            board[1][column] = new Cell(Player.FIRST);
+    /**
+     * Registers a listener notified of every changed cell.
+     * @param listener 
+     */
+    public void addBoardListener(BoardListener listener) {
+        listeners.add(listener);
+    }
 
-            board[size - 2][column] = new Cell(Player.SECOND);
-            board[size - 1][column] = new Cell(Player.SECOND);
+    public void removeBoardListener(BoardListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts a new game on the same board: sets up the dolls, clears the selection and gives the turn to the first player.
+     */
+    public void reset() {
+        position.reset();
+        selectedSquare = -1;
+        plies = 0;
+        recordedPlies = 0;
+        stackedPlies = 0;
+        snapshotPlies = 0;
+        for (BoardListener listener : listeners) {
+            listener.boardReset();
         }
+    }
 
-        for (int row = 2; row < size - 2; row++) {
-            for (int column = 0; column < size; column++) {
-                board[row][column] = new Cell(Player.NONE);
-            }
+    /**
+     * Sets the board to the position after the given number of plies of the given game and takes over its moves;
+     * the moves after the given ply can be replayed by redo.
+     * @param game game of the size of the board.
+     * @param ply from 0 for the starting position to game.getPlies().
+     */
+    public void restore(GameHistory game, int ply) {
+        if (game.getRows() != rows || game.getColumns() != columns) {
+            throw new IllegalArgumentException("The game is " + game.getColumns() + "x" + game.getRows() + ", the board " + columns + "x" + rows + "!");
+        }
+        game.seek(ply, position);
+        if (history.length < game.getPlies()) {
+            history = new int[game.getPlies()];
+        }
+        for (int i = 0; i < game.getPlies(); i++) {
+            history[i] = game.getMove(i);
+        }
+        plies = ply;
+        recordedPlies = game.getPlies();
+        stackedPlies = 0;
+        snapshotPlies = 0;
+        selectedSquare = -1;
+        for (BoardListener listener : listeners) {
+            listener.boardReset();
         }
     }
 
+    /**
+     * Gets the size of a square board.
+     * @return the number of rows and columns.
+     * @throws IllegalStateException if the board is not square; use getRows and getColumns instead.
+     */
     public int getSize() {
-        return size;
+        if (rows != columns) {
+            throw new IllegalStateException("The board is " + rows + "x" + columns + ", not square!");
+        }
+        return rows;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
     }
 
+    public BitBoard getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns a view of the specified cell backed by the board.
+     * @param row
+     * @param column
+     * @return Cell reflecting the current owner and selection of the square.
+     */
     public Cell getCell(int row, int column) {
-        return board[row][column];
+        return new Cell(this, row, column);
     }
 
     /**
@@ -56,111 +151,254 @@ public class Board {
      * @return true if it's the turn of the first player, otherwise, false.
      */
     public boolean firstTurn() {
-        return firstTurn;
+        return position.firstTurn();
     }
 
     /**
-     * Carries the whole logic of a move.
-     * @param direction
+     * Carries the whole logic of a move; kept for callers of the string API, which is a thin wrapper of tryMove.
+     * @param direction one of the arrows UP, DOWN, LEFT and RIGHT.
      * @param currentRow
      * @param currentColumn
-     * @return true if a move was successful, otherwise, false.
-     * @throws WrongDirectionException 
+     * @return true if a move was successful, false if the direction is not an arrow.
+     * @throws WrongDirectionException with the message of the status if the move is not legal.
      */
     public boolean makeMove(String direction, int currentRow, int currentColumn) throws WrongDirectionException {
-        boolean successfulMove = false;
-        if (direction.equals(UP)) {
-            if (!firstTurn) {
-                if (isNewCellFree(currentRow - 1, currentColumn)) {
-                    performMove(currentRow, currentColumn, currentRow - 1, currentColumn, Player.SECOND);
-                    successfulMove = true;
-                } else if (isNewCellOccupiedByPlayer(currentRow - 1, currentColumn, Player.FIRST)) {
-                    throw new WrongDirectionException("You cannot move forward onto your opponent's doll! Only forward diagonally!");
-                } else {
-                    throw new WrongDirectionException("You cannot go onto your dolls!");
-                }
-            } else {
-                throw new WrongDirectionException("You can only move towards your opponent!");
-            }
-        } else if (direction.equals(DOWN)) {
-            if (firstTurn) {
-                if (isNewCellFree(currentRow + 1, currentColumn)) {
-                    performMove(currentRow, currentColumn, currentRow + 1, currentColumn, Player.FIRST);
-                    successfulMove = true;
-                } else if (isNewCellOccupiedByPlayer(currentRow + 1, currentColumn, Player.SECOND)) {
-                    throw new WrongDirectionException("You cannot move forward onto your opponent's doll! Only forward diagonally!");
-                } else {
-                    throw new WrongDirectionException("You cannot go onto your dolls!");
-                }
-            } else {
-                throw new WrongDirectionException("You can only move towards your opponent!");
-            }
-        } else if (direction.equals(LEFT)) {
-            if (firstTurn) {
-                if (currentColumn != 0) {
-                    if (isValidDiagonalMove(currentRow + 1, currentColumn - 1, Player.SECOND)) {
-                        performMove(currentRow, currentColumn, currentRow + 1, currentColumn - 1, Player.FIRST);
-                        successfulMove = true;
-                    } else {
-                        throw new WrongDirectionException("You cannot go onto your dolls!");
-                    }
-                } else {
-                    throw new WrongDirectionException("There is a wall on the left!");
-                }
-            } else {
-                if (currentColumn != 0) {
-                    if (isValidDiagonalMove(currentRow - 1, currentColumn - 1, Player.FIRST)) {
-                        performMove(currentRow, currentColumn, currentRow - 1, currentColumn - 1, Player.SECOND);
-                        successfulMove = true;
-                    } else {
-                        throw new WrongDirectionException("You cannot go onto your dolls!");
-                    }
-                } else {
-                    throw new WrongDirectionException("There is a wall on the left!");
-                }
-            }
-        } else if (direction.equals(RIGHT)) {
-            if (firstTurn) {
-                if (currentColumn + 1 != size) {
-                    if (isValidDiagonalMove(currentRow + 1, currentColumn + 1, Player.SECOND)) {
-                        performMove(currentRow, currentColumn, currentRow + 1, currentColumn + 1, Player.FIRST);
-                        successfulMove = true;
-                    } else {
-                        throw new WrongDirectionException("You cannot go onto your doll!");
-                    }
-                } else {
-                    throw new WrongDirectionException("There is a wall on the right!");
-                }
-            } else {
-                if (currentColumn + 1 != size) {
-                    if (isValidDiagonalMove(currentRow - 1, currentColumn + 1, Player.FIRST)) {
-                        performMove(currentRow, currentColumn, currentRow - 1, currentColumn + 1, Player.SECOND);
-                        successfulMove = true;
-                    } else {
-                        throw new WrongDirectionException("You cannot go onto your doll!");
-                    }
-                } else {
-                    throw new WrongDirectionException("There is a wall on the right!");
-                }
+        Direction typed = Direction.of(direction);
+        if (typed == null) {
+            return false;
+        }
+        MoveStatus status = tryMove(typed, currentRow, currentColumn);
+        if (status != MoveStatus.OK) {
+            throw new WrongDirectionException(status.getMessage(typed));
+        }
+        return true;
+    }
+
+    /**
+     * Checks a move of the doll on the given cell by the player whose turn it is without changing the board or allocating.
+     * @param direction
+     * @param currentRow
+     * @param currentColumn
+     * @return OK if the move is legal, otherwise, the reason why it is not.
+     * @throws IndexOutOfBoundsException if the cell is outside of the board or on the edge the player moves to.
+     */
+    public MoveStatus validateMove(Direction direction, int currentRow, int currentColumn) {
+        boolean firstTurn = position.firstTurn();
+        if (direction.getColumnStep() == 0 && (direction == Direction.DOWN) != firstTurn) {
+            return MoveStatus.WRONG_DIRECTION;
+        }
+        int newRow = currentRow + (firstTurn ? 1 : -1);
+        int newColumn = currentColumn + direction.getColumnStep();
+        if (newColumn < 0 || newColumn >= columns) {
+            return MoveStatus.WALL;
+        }
+        Objects.checkIndex(currentRow, rows);
+        Objects.checkIndex(currentColumn, columns);
+        Objects.checkIndex(newRow, rows);
+        int to = position.square(newRow, newColumn);
+        if (position.isOccupiedBy(to, firstTurn ? Player.FIRST : Player.SECOND)) {
+            return MoveStatus.OWN_PIECE;
+        }
+        if (direction.getColumnStep() == 0 && !position.isFree(to)) {
+            return MoveStatus.FORWARD_BLOCKED;
+        }
+        return MoveStatus.OK;
+    }
+
+    /**
+     * Makes the move of the doll on the given cell if it is legal; an illegal move is counted in the metrics by its status.
+     * @param direction
+     * @param currentRow
+     * @param currentColumn
+     * @return OK if the move was made, otherwise, the reason why it was not.
+     * @throws IndexOutOfBoundsException if the cell is outside of the board or on the edge the player moves to.
+     */
+    public MoveStatus tryMove(Direction direction, int currentRow, int currentColumn) {
+        MoveStatus status = validateMove(direction, currentRow, currentColumn);
+        if (status != MoveStatus.OK) {
+            Metrics.illegalMove(status);
+            return status;
+        }
+        boolean firstTurn = position.firstTurn();
+        int from = position.square(currentRow, currentColumn);
+        performMove(from, from + (firstTurn ? columns : -columns) + direction.getColumnStep(), firstTurn);
+        return MoveStatus.OK;
+    }
+
+    /**
+     * Writes all legal moves of the player whose turn it is into the given buffer without changing the board.
+     * @param moves buffer of at least getPosition().getMaxMoves() elements.
+     * @return the number of moves written.
+     */
+    public int generateMoves(int[] moves) {
+        return position.generateMoves(moves);
+    }
+
+    /**
+     * Checks whether the given encoded move is legal for the player whose turn it is.
+     * @param move
+     * @return true if the move is legal, otherwise, false.
+     */
+    public boolean isLegal(int move) {
+        return position.isLegal(move);
+    }
+
+    /**
+     * Applies the given legal encoded move in place and switches the turns; it can be taken back by unmakeMove or undo.
+     * @param move
+     */
+    public void makeMove(int move) {
+        position.makeMove(move);
+        record(move);
+        stackedPlies++;
+        fireMoveChanged(move);
+    }
+
+    /**
+     * Takes back the last move, made by either makeMove method, and restores the turn.
+     * A move made by makeMove(int) or redo is taken back on the undo stack of the position, any other one by undo.
+     * @throws IllegalStateException if no move has been made.
+     */
+    public void unmakeMove() {
+        if (stackedPlies == 0) {
+            if (!undo()) {
+                throw new IllegalStateException("There is no move to take back!");
             }
+            return;
+        }
+        int move = history[plies - 1];
+        position.unmakeMove();
+        stackedPlies--;
+        plies--;
+        fireMoveChanged(move);
+    }
+
+    /**
+     * Takes back the last move; the move can be made again by redo. A move on the undo stack of the position is unmade,
+     * any other one, e.g. a move of the string API or one before restore, by restoring the snapshot of the position before it.
+     * @return true if a move was taken back, false at the start of the game.
+     */
+    public boolean undo() {
+        if (plies == 0) {
+            return false;
+        }
+        int move = history[plies - 1];
+        if (stackedPlies > 0) {
+            position.unmakeMove();
+            stackedPlies--;
+        } else {
+            completeTimeline();
+            timeline[plies - 1].restore(position);
         }
-        return successfulMove;
+        plies--;
+        clearSelection();
+        fireMoveChanged(move);
+        return true;
+    }
+
+    /**
+     * Makes the last move taken back by undo again; a new move made after undo discards the moves that could be redone.
+     * @return true if a move was made, false if there is no move to redo.
+     */
+    public boolean redo() {
+        if (plies == recordedPlies) {
+            return false;
+        }
+        int move = history[plies];
+        position.makeMove(move);
+        plies++;
+        stackedPlies++;
+        clearSelection();
+        fireMoveChanged(move);
+        return true;
+    }
+
+    /**
+     * Checks whether there is a move undo can take back.
+     * @return true if a move has been made, otherwise, false.
+     */
+    public boolean canUndo() {
+        return plies > 0;
+    }
+
+    /**
+     * Checks whether there is a move redo can make again.
+     * @return true if a move has been taken back and no other move made since, otherwise, false.
+     */
+    public boolean canRedo() {
+        return plies < recordedPlies;
+    }
+
+    /**
+     * Gets the position before a move of the game; consecutive snapshots differ in the two squares of the move.
+     * @param ply from 0 for the starting position to getPlies() - 1 for the position before the last move.
+     * @return the immutable snapshot.
+     */
+    public PositionSnapshot getSnapshot(int ply) {
+        Objects.checkIndex(ply, plies);
+        completeTimeline();
+        return timeline[ply];
+    }
+
+    /**
+     * Gets the number of moves played since the start of the game, by either makeMove method.
+     * @return number of plies.
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Gets a move of the game.
+     * @param ply from 0 for the first move to getPlies() - 1 for the last one.
+     * @return the encoded move.
+     */
+    public int getMove(int ply) {
+        Objects.checkIndex(ply, plies);
+        return history[ply];
     }
 
     /**
      * Switches the turns.
      */
     public void changeTurn() {
-        this.firstTurn = !firstTurn;
+        position.changeTurn();
     }
 
     /**
-     * Selects and deselects the specified cell in the board.
+     * Selects and deselects the specified cell in the board; at most one cell is selected at a time.
      * @param row
      * @param column 
      */
     public void selectCell(int row, int column) {
-        board[row][column].select();
+        int square = square(row, column);
+        int previous = selectedSquare;
+        selectedSquare = selectedSquare == square ? -1 : square;
+        if (previous != -1 && previous != square) {
+            fireCellChanged(previous);
+        }
+        fireCellChanged(square);
+    }
+
+    /**
+     * Deselects the selected cell, if there is one.
+     */
+    public void clearSelection() {
+        int previous = selectedSquare;
+        selectedSquare = -1;
+        if (previous != -1) {
+            fireCellChanged(previous);
+        }
+    }
+
+    /**
+     * Checks whether the specified cell is selected.
+     * @param row
+     * @param column
+     * @return true if the cell is selected, otherwise, false.
+     */
+    public boolean isSelected(int row, int column) {
+        return selectedSquare == square(row, column);
     }
 
     /**
@@ -168,92 +406,117 @@ public class Board {
      * @return true if one of the cells has already been selected, otherwise, false.
      */
     public boolean noneSelected() {
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                if (board[row][column].isSelected()) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return selectedSquare == -1;
     }
 
     /**
-     * Gets the current state of the game; the player who reaches the opponent's side wins.
+     * Gets the row of the selected cell.
+     * @return the row, or -1 if no cell is selected.
+     */
+    public int getSelectedRow() {
+        return selectedSquare == -1 ? -1 : selectedSquare / columns;
+    }
+
+    /**
+     * Gets the column of the selected cell.
+     * @return the column, or -1 if no cell is selected.
+     */
+    public int getSelectedColumn() {
+        return selectedSquare == -1 ? -1 : selectedSquare % columns;
+    }
+
+    /**
+     * Gets the current state of the game; the player who reaches the opponent's side or beats all dolls of the opponent wins.
      * @return SECOND if the second player wins, FIRST if the first player wins, NONE if the game is still in progress.
      */
     public Player getGameResult() {
-        for (int column = 0; column < size; column++) {
-            if (isTopCellOwnedBySecondPlayer(column)) {
-                return Player.SECOND;
-            }
-            if (isBottomCellOwnedByFirstPlayer(column)) {
-                return Player.FIRST;
-            }
-        }
-        return Player.NONE;
+        return position.getWinner();
     }
 
     /**
-     * Checks whether the diagonal move is valid.
-     * @param newRow
-     * @param newColumn
-     * @param opponent
-     * @return true if the move is valid, otherwise, false.
+     * Converts the given cell to the index of its square in the position.
+     * @param row
+     * @param column
+     * @return index of the square.
      */
-    private boolean isValidDiagonalMove(int newRow, int newColumn, Player opponent) {
-        return isNewCellFree(newRow, newColumn) || isNewCellOccupiedByPlayer(newRow, newColumn, opponent);
+    private int square(int row, int column) {
+        Objects.checkIndex(row, rows);
+        Objects.checkIndex(column, columns);
+        return position.square(row, column);
     }
 
     /**
-     * Checks whether the given cell is free.
-     * @param newRow
-     * @param newColumn
-     * @return true if the cell is free, otherwise, false.
+     * Releases the previous square and occupies the new square by the new player; the move is not on the undo stack
+     * of the position, as it leaves the turn to changeTurn.
+     * @param from
+     * @param to
+     * @param firstPlayer true if the new square is occupied by the FIRST player.
      */
-    private boolean isNewCellFree(int newRow, int newColumn) {
-        return board[newRow][newColumn].getOwner() == Player.NONE;
+    private void performMove(int from, int to, boolean firstPlayer) {
+        position.movePiece(from, to, firstPlayer);
+        record(Move.encode(from, to));
+        stackedPlies = 0;
+        fireCellChanged(from);
+        fireCellChanged(to);
     }
 
     /**
-     * Checks whether the given cell is occupied by the given player.
-     * @param newRow
-     * @param newColumn
-     * @param player
-     * @return true if the cell is occupied, otherwise, false.
+     * Appends the given move to the history of the game, discarding the moves that could be redone.
+     * @param move 
      */
-    private boolean isNewCellOccupiedByPlayer(int newRow, int newColumn, Player player) {
-        return board[newRow][newColumn].getOwner() == player;
+    private void record(int move) {
+        if (plies == history.length) {
+            history = Arrays.copyOf(history, 2 * history.length);
+        }
+        history[plies++] = move;
+        recordedPlies = plies;
+        snapshotPlies = Math.min(snapshotPlies, plies);
+        Metrics.moveApplied();
     }
 
     /**
-     * Releases the previous cell and occupies the new cell by the new player.
-     * @param currentRow
-     * @param currentColumn
-     * @param newRow
-     * @param newColumn
-     * @param player 
+     * Takes the missing snapshots of the plies played so far by replaying the moves from the last snapshot that is kept.
+     * The moves themselves take no snapshots, so they stay as cheap as on the position, and restore leaves them out
+     * as well, so that seeking through a game stays cheap; they are only taken when undo or getSnapshot needs them.
      */
-    private void performMove(int currentRow, int currentColumn, int newRow, int newColumn, Player player) {
-        board[currentRow][currentColumn].occupyByNone();
-        board[newRow][newColumn].occupyByPlayer(player);
+    private void completeTimeline() {
+        if (snapshotPlies >= plies) {
+            return;
+        }
+        if (timeline.length < plies) {
+            timeline = Arrays.copyOf(timeline, Math.max(plies, 2 * timeline.length));
+        }
+        BitBoard replay = new BitBoard(rows, columns);
+        int ply = 0;
+        if (snapshotPlies > 0) {
+            ply = snapshotPlies - 1;
+            timeline[ply].restore(replay);
+        }
+        for (; ply < plies; ply++) {
+            if (ply >= snapshotPlies) {
+                timeline[ply] = PositionSnapshot.of(replay);
+            }
+            replay.makeMove(history[ply]);
+        }
+        snapshotPlies = plies;
     }
 
     /**
-     * Checks if the SECOND player has reached the top cell.
-     * @param column
-     * @return true if the SECOND player has reached the top cell, otherwise, false.
+     * Notifies the listeners of the two cells of the given move.
+     * @param move 
      */
-    private boolean isTopCellOwnedBySecondPlayer(int column) {
-        return board[0][column].getOwner() == Player.SECOND;
+    private void fireMoveChanged(int move) {
+        fireCellChanged(Move.from(move));
+        fireCellChanged(Move.to(move));
     }
 
     /**
-     * Checks if the FIRST player has reached the bottom cell.
-     * @param column
-     * @return true if the FRST player has reacher the bottom cell, otherwise, false.
+     * Notifies the listeners of the given changed square.
+     * @param square 
      */
-    private boolean isBottomCellOwnedByFirstPlayer(int column) {
-        return board[size - 1][column].getOwner() == Player.FIRST;
+    private void fireCellChanged(int square) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).cellChanged(square / columns, square % columns);
+        }
     }
 }
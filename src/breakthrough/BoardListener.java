@@ -0,0 +1,24 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+/**
+ * Receives the changes of a Board; a move touches at most two cells.
+ * @author artur
+ */
+public interface BoardListener {
+
+    /**
+     * Called when the owner or the selection of the given cell has changed.
+     * @param row
+     * @param column
+     */
+    void cellChanged(int row, int column);
+
+    /**
+     * Called when the whole board has changed, e.g. when a new game starts.
+     */
+    void boardReset();
+}
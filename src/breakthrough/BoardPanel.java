@@ -0,0 +1,200 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.swing.JPanel;
+
+/**
+ * Paints the whole board with Java2D instead of one button per square, so large boards stay light.
+ * Only the squares inside the clip are painted, and the dolls are drawn from images cached per square size.
+ * @author artur
+ */
+public class BoardPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_CELL_SIZE = 45;
+    private static final int MIN_CELL_SIZE = 16;
+    private static final int PREFERRED_BOARD_SIZE = 720;
+    private static final Color LIGHT_SQUARE = new Color(0xEE, 0xEE, 0xEE);
+    private static final Color GRID = new Color(0xB8, 0xCF, 0xE5);
+    private static final Color SELECTED_SQUARE = Color.yellow;
+    private static final Color HINT_SQUARE = new Color(0xA5, 0xD6, 0xA7);
+    private static final Color HINT_TARGET = new Color(0xDC, 0xED, 0xC8);
+
+    private final Board board;
+    private final int rows;
+    private final int columns;
+    private BufferedImage firstGlyph;
+    private BufferedImage secondGlyph;
+    private int glyphSize;
+    private int hintFrom = -1;
+    private int hintTo = -1;
+
+    /**
+     * Public constructor initializes the panel painting the given board.
+     * @param board
+     */
+    public BoardPanel(Board board) {
+        this.board = board;
+        this.rows = board.getRows();
+        this.columns = board.getColumns();
+        int cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, PREFERRED_BOARD_SIZE / Math.max(rows, columns)));
+        setPreferredSize(new Dimension(columns * cellSize, rows * cellSize));
+        setOpaque(true);
+    }
+
+    /**
+     * Gets the side of a square at the current size of the panel.
+     * @return size of a square in pixels, at least 1.
+     */
+    private int getCellSize() {
+        return Math.max(1, Math.min(getWidth() / columns, getHeight() / rows));
+    }
+
+    /**
+     * Gets the left edge of the board, which is centered horizontally.
+     * @return x coordinate of the first column.
+     */
+    private int getBoardX() {
+        return (getWidth() - columns * getCellSize()) / 2;
+    }
+
+    /**
+     * Maps a point of the panel to the row of the board.
+     * @param y
+     * @return the row, or -1 if the point is outside the board.
+     */
+    public int rowAt(int y) {
+        int row = Math.floorDiv(y, getCellSize());
+        return row >= 0 && row < rows ? row : -1;
+    }
+
+    /**
+     * Maps a point of the panel to the column of the board.
+     * @param x
+     * @return the column, or -1 if the point is outside the board.
+     */
+    public int columnAt(int x) {
+        int column = Math.floorDiv(x - getBoardX(), getCellSize());
+        return column >= 0 && column < columns ? column : -1;
+    }
+
+    /**
+     * Repaints the square based on the given row and column only.
+     * @param row
+     * @param column
+     */
+    public void repaintCell(int row, int column) {
+        int cellSize = getCellSize();
+        repaint(getBoardX() + column * cellSize, row * cellSize, cellSize, cellSize);
+    }
+
+    /**
+     * Highlights the doll and the square of a suggested move; only the squares of the old and the new hint are repainted.
+     * @param move encoded move, or Move.NONE to remove the hint.
+     */
+    public void setHint(int move) {
+        int from = move == Move.NONE ? -1 : Move.from(move);
+        int to = move == Move.NONE ? -1 : Move.to(move);
+        if (from == hintFrom && to == hintTo) {
+            return;
+        }
+        repaintSquare(hintFrom);
+        repaintSquare(hintTo);
+        hintFrom = from;
+        hintTo = to;
+        repaintSquare(hintFrom);
+        repaintSquare(hintTo);
+    }
+
+    /**
+     * Repaints the given square, if there is one.
+     * @param square row * columns + column, or -1.
+     */
+    private void repaintSquare(int square) {
+        if (square >= 0) {
+            repaintCell(square / columns, square % columns);
+        }
+    }
+
+    /**
+     * Override paints the squares intersecting the clip; everything outside the board is cleared.
+     * @param g
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int cellSize = getCellSize();
+        int boardX = getBoardX();
+        if (glyphSize != cellSize) {
+            firstGlyph = createGlyph("O", cellSize);
+            secondGlyph = createGlyph("X", cellSize);
+            glyphSize = cellSize;
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int firstRow = Math.max(0, clip.y / cellSize);
+        int lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / cellSize);
+        int firstColumn = Math.max(0, Math.floorDiv(clip.x - boardX, cellSize));
+        int lastColumn = Math.min(columns - 1, Math.floorDiv(clip.x + clip.width - 1 - boardX, cellSize));
+        BitBoard position = board.getPosition();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int x = boardX + column * cellSize;
+                int y = row * cellSize;
+                int square = row * columns + column;
+                if (board.isSelected(row, column)) {
+                    g.setColor(SELECTED_SQUARE);
+                } else if (square == hintFrom) {
+                    g.setColor(HINT_SQUARE);
+                } else if (square == hintTo) {
+                    g.setColor(HINT_TARGET);
+                } else {
+                    g.setColor(LIGHT_SQUARE);
+                }
+                g.fillRect(x, y, cellSize, cellSize);
+                g.setColor(GRID);
+                g.drawRect(x, y, cellSize - 1, cellSize - 1);
+                Player owner = position.getOwner(row, column);
+                if (owner == Player.FIRST) {
+                    g.drawImage(firstGlyph, x, y, null);
+                } else if (owner == Player.SECOND) {
+                    g.drawImage(secondGlyph, x, y, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the symbol of a doll once into a transparent image of the given size.
+     * @param symbol
+     * @param cellSize
+     * @return image of the doll centered in a square.
+     */
+    private BufferedImage createGlyph(String symbol, int cellSize) {
+        BufferedImage image = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(getFont().deriveFont(Font.BOLD, Math.max(8f, cellSize * 0.45f)));
+        g.setColor(Color.black);
+        FontMetrics metrics = g.getFontMetrics();
+        int x = (cellSize - metrics.stringWidth(symbol)) / 2;
+        int y = (cellSize - metrics.getHeight()) / 2 + metrics.getAscent();
+        g.drawString(symbol, x, y);
+        g.dispose();
+        return image;
+    }
+}
@@ -4,16 +4,291 @@
  */
 package breakthrough;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 /**
  *
  * @author artur
  */
 public class BreakThrough {
 
+    private static final int DEFAULT_PORT = 7777;
+    private static final String[] DEFAULT_BENCH_SIZES = {"6", "8", "10", "16", "32", "8x7", "12x16"};
+    private static final int[] DEFAULT_PERFT_SIZES = {6, 8, 10};
+
+    /**
+     * Starts the game window, or runs the given headless command.
+     * @param args the command line arguments: none for the game window, "bench [sizes...]", "smp-bench [size] [depth] [repetitions]",
+     * "tournament [--size n] [--games n] [--threads n] [--max-plies n] [--a engine:ms] [--b engine:ms] [--record file] [--tablebase file] [--book file]",
+     * "records file [--positions]", "replay file [ply]", "tablebase file [dolls] [size]", "book file [size] [games] [plies] [depth]",
+     * "train records file [size] [epochs] [hidden]", "perft [depth] [reference depth] [openings] [sizes...]",
+     * "server [port]" or "load [--port n] [--size n] [--sessions n,n,...] [--seconds s]".
+     * A size is either n for a square board or columns x rows, e.g. 12x16.
+     * With -Dbreakthrough.metrics=true a headless command prints the metrics when it ends, and every breakthrough.metrics.interval
+     * milliseconds if that property is set; breakthrough.metrics.format=json prints JSON instead of text.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            BreakThroughGUI gui = new BreakThroughGUI();
+            return;
+        }
+        boolean json = "json".equals(System.getProperty("breakthrough.metrics.format"));
+        long interval = Long.getLong("breakthrough.metrics.interval", 0);
+        if (Metrics.ENABLED && interval > 0) {
+            Metrics.startReporter(System.err, interval, json);
+        }
+        switch (args[0]) {
+            case "bench":
+                new GameBenchmark(sizeArguments(args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : DEFAULT_BENCH_SIZES)).run(System.out);
+                break;
+            case "smp-bench":
+                int[] size = parseSize(args.length > 1 ? args[1] : "10");
+                new SearchBenchmark(size[0], size[1], intArgument(args, 2, 7), intArgument(args, 3, 3)).run(System.out);
+                break;
+            case "tournament":
+                Tournament.fromArguments(Arrays.copyOfRange(args, 1, args.length)).run(System.out);
+                break;
+            case "records":
+                printRecords(args[1], args.length > 2 && "--positions".equals(args[2]), System.out);
+                break;
+            case "replay":
+                printReplay(args[1], args.length > 2 ? Integer.parseInt(args[2]) : -1, System.out);
+                break;
+            case "tablebase":
+                buildTablebase(args[1], intArgument(args, 2, Tablebase.DEFAULT_PIECES), parseSize(args.length > 3 ? args[3] : "6"), System.out);
+                break;
+            case "book":
+                buildOpeningBook(args[1], parseSize(args.length > 2 ? args[2] : "8"), intArgument(args, 3, 200), intArgument(args, 4, 8), intArgument(args, 5, 6), System.out);
+                break;
+            case "train":
+                trainEvaluator(args[1], args[2], parseSize(args.length > 3 ? args[3] : "8"), intArgument(args, 4, 5), intArgument(args, 5, NetworkEvaluator.DEFAULT_HIDDEN), System.out);
+                break;
+            case "perft":
+                int[] sizes = args.length > 4 ? Arrays.stream(args, 4, args.length).mapToInt(Integer::parseInt).toArray() : DEFAULT_PERFT_SIZES;
+                if (!Perft.run(sizes, intArgument(args, 1, 5), intArgument(args, 2, 4), intArgument(args, 3, 2), System.out)) {
+                    System.exit(1);
+                }
+                break;
+            case "server":
+                runServer(intArgument(args, 1, DEFAULT_PORT), System.out);
+                break;
+            case "load":
+                LoadGenerator.fromArguments(Arrays.copyOfRange(args, 1, args.length)).run(System.out);
+                break;
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(1);
+        }
+        if (Metrics.ENABLED) {
+            System.err.println(Metrics.snapshot(json));
+        }
+    }
+
+    /**
+     * Scans a game record file, decoding every move, and prints the results and the reading speed.
+     * @param file
+     * @param positions true to also replay every game and keep each distinct position once in a SnapshotPool.
+     * @param out
+     * @throws IOException
+     */
+    private static void printRecords(String file, boolean positions, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        long games = 0;
+        long plies = 0;
+        long[] wins = new long[Player.values().length];
+        long checksum = 0;
+        SnapshotPool pool = new SnapshotPool();
+        BitBoard position = null;
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(file))) {
+            while (reader.next()) {
+                games++;
+                plies += reader.getPlies();
+                wins[reader.getWinner().ordinal()]++;
+                if (positions && (position == null || position.getRows() != reader.getRows() || position.getColumns() != reader.getColumns())) {
+                    position = new BitBoard(reader.getRows(), reader.getColumns());
+                } else if (positions) {
+                    position.reset();
+                }
+                for (int ply = 0; ply < reader.getPlies(); ply++) {
+                    int move = reader.getMove(ply);
+                    checksum += move;
+                    if (positions) {
+                        pool.intern(position);
+                        position.makeMove(move);
+                    }
+                }
+                if (positions) {
+                    pool.intern(position);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("%d games, %d plies, %.1f plies per game%n", games, plies, games == 0 ? 0.0 : (double) plies / games);
+        out.printf("O wins %d, X wins %d, unfinished %d%n", wins[Player.FIRST.ordinal()], wins[Player.SECOND.ordinal()], wins[Player.NONE.ordinal()]);
+        out.printf("read in %.2f s, %.0f games/s, %.0f moves/s (checksum %x)%n", seconds, games / seconds, plies / seconds, checksum);
+        if (positions) {
+            out.printf("%d positions, %d distinct kept as snapshots%n", plies + games, pool.size());
+        }
+    }
+
+    /**
+     * Loads the last game of a game record file and prints the position after the given ply and the time the seek took.
+     * @param file
+     * @param ply the ply, or -1 for the end of the game.
+     * @param out
+     * @throws IOException
+     */
+    private static void printReplay(String file, int ply, PrintStream out) throws IOException {
+        GameHistory game = GameHistory.load(Paths.get(file));
+        int target = ply < 0 ? game.getPlies() : Math.min(ply, game.getPlies());
+        BitBoard position = new BitBoard(game.getRows(), game.getColumns());
+        long start = System.nanoTime();
+        game.seek(target, position);
+        long elapsed = System.nanoTime() - start;
+        out.printf("%s (O) vs %s (X), %dx%d, %d plies%n", game.getFirstPlayer(), game.getSecondPlayer(), game.getColumns(), game.getRows(), game.getPlies());
+        out.print(position);
+        out.printf("after ply %d, %s to move, seek took %d us%n", target, position.firstTurn() ? "O" : "X", elapsed / 1000);
+    }
+
+    /**
+     * Solves the endgames of the given board, writes the tablebase file and prints the results from the mapped file.
+     * @param file
+     * @param pieces maximum number of dolls.
+     * @param size rows and columns.
+     * @param out
+     * @throws IOException
+     */
+    private static void buildTablebase(String file, int pieces, int[] size, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        Tablebase.generate(size[0], size[1], pieces, out).write(Paths.get(file));
+        Tablebase tablebase = Tablebase.open(Paths.get(file));
+        long[] statistics = tablebase.statistics();
+        out.printf("%dx%d up to %d dolls: %d positions in %.1f s%n", tablebase.getColumns(), tablebase.getRows(), pieces, tablebase.getSize(), (System.nanoTime() - start) / 1e9);
+        out.printf("won by the player to move %d, lost %d, longest %d plies%n", statistics[0], statistics[1], statistics[2]);
+    }
+
+    /**
+     * Builds the opening book of the given board by self-play, writes it and prints how fast the mapped file answers.
+     * @param file
+     * @param size rows and columns.
+     * @param games
+     * @param plies
+     * @param depth
+     * @param out
+     * @throws IOException
+     */
+    private static void buildOpeningBook(String file, int[] size, int games, int plies, int depth, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        OpeningBook.build(size[0], size[1], games, plies, depth, 1, out).write(Paths.get(file));
+        OpeningBook book = OpeningBook.open(Paths.get(file));
+        out.printf("%dx%d: %d positions in %.1f s%n", book.getColumns(), book.getRows(), book.getEntries(), (System.nanoTime() - start) / 1e9);
+        BitBoard position = new BitBoard(size[0], size[1]);
+        int lookups = 1_000_000;
+        long found = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            found += book.lookup(position) != Move.NONE ? 1 : 0;
+        }
+        out.printf("lookup of the starting position %.0f ns (%s)%n", (double) (System.nanoTime() - start) / lookups, found == lookups ? "in the book" : "not in the book");
+    }
+
+    /**
+     * Trains the network evaluation of the given board on a game record file, writes it and prints how fast it scores positions.
+     * @param records
+     * @param file
+     * @param size rows and columns.
+     * @param epochs
+     * @param hidden
+     * @param out
+     * @throws IOException
+     */
+    private static void trainEvaluator(String records, String file, int[] size, int epochs, int hidden, PrintStream out) throws IOException {
+        NetworkEvaluator.train(Paths.get(records), size[0], size[1], hidden, epochs, 1, out).write(Paths.get(file));
+        NetworkEvaluator network = NetworkEvaluator.open(Paths.get(file));
+        BitBoard position = new BitBoard(size[0], size[1]);
+        int[] moves = new int[position.getMaxMoves()];
+        int[] scores = new int[moves.length];
+        int count = position.generateMoves(moves);
+        NetworkEvaluator.Accumulator accumulator = network.newAccumulator(1, moves.length);
+        accumulator.reset(position);
+        int repetitions = 1_000_000;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            accumulator.push(position, moves[i % count]);
+            checksum += accumulator.score(!position.firstTurn());
+            accumulator.pop();
+        }
+        double incremental = (double) (System.nanoTime() - start) / repetitions;
+        start = System.nanoTime();
+        for (int i = 0; i < repetitions / count; i++) {
+            accumulator.scoreMoves(position, moves, count, scores);
+            checksum += scores[i % count];
+        }
+        double batched = (double) (System.nanoTime() - start) / (repetitions / count * count);
+        start = System.nanoTime();
+        for (int i = 0; i < repetitions / 10; i++) {
+            checksum += network.evaluate(position);
+        }
+        double scratch = (double) (System.nanoTime() - start) / (repetitions / 10);
+        out.printf("%dx%d, %d hidden units: %.1f ns per move and score, %.1f ns per move scored in a batch, %.1f ns from scratch (checksum %d)%n",
+                network.getColumns(), network.getRows(), network.getHidden(), incremental, batched, scratch, checksum);
+    }
+
+    /**
+     * Runs the game server in the foreground until the process is stopped.
+     * @param port
+     * @param out
+     * @throws IOException
+     */
+    private static void runServer(int port, PrintStream out) throws IOException {
+        GameServer server = new GameServer(port);
+        server.start();
+        out.println("Serving games on localhost:" + server.getPort());
+        try {
+            server.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Parses every given board size.
+     * @param sizes
+     * @return pairs of rows and columns.
+     */
+    private static int[][] sizeArguments(String[] sizes) {
+        return Arrays.stream(sizes).map(BreakThrough::parseSize).toArray(int[][]::new);
+    }
+
+    /**
+     * Parses a board size given as n for a square board or as columns x rows, e.g. 12x16 for 12 columns and 16 rows.
+     * @param text
+     * @return the rows and the columns.
+     */
+    static int[] parseSize(String text) {
+        int separator = text.indexOf('x');
+        if (separator < 0) {
+            int size = Integer.parseInt(text);
+            return new int[]{size, size};
+        }
+        return new int[]{Integer.parseInt(text.substring(separator + 1)), Integer.parseInt(text.substring(0, separator))};
+    }
+
     /**
-     * @param args the command line arguments
+     * Reads an optional positional integer argument.
+     * @param args
+     * @param index
+     * @param defaultValue
+     * @return the argument at the index, or the default value if it is missing.
      */
-    public static void main(String[] args) {
-        BreakThroughGUI gui = new BreakThroughGUI();
+    private static int intArgument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
     }
 }
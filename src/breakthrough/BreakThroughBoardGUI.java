@@ -4,12 +4,8 @@
  */
 package breakthrough;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.GridLayout;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import javax.swing.JButton;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
@@ -19,13 +15,9 @@ import javax.swing.JPanel;
  */
 public final class BreakThroughBoardGUI {
 
-    private static final int BUTTON_SIZE = 45;
-    
-    private final JButton[][] guiBoard;
     private final Board logicBoard;
-    private final JPanel boardPanel;
-    private int selectedRow;
-    private int selectedColumn;
+    private final BoardPanel boardPanel;
+    private boolean inputEnabled;
 
     public JPanel getBoardPanel() {
         return boardPanel;
@@ -36,57 +28,77 @@ public final class BreakThroughBoardGUI {
     }
 
     public int getSelectedRow() {
-        return selectedRow;
+        return logicBoard.getSelectedRow();
     }
 
     public int getSelectedColumn() {
-        return selectedColumn;
+        return logicBoard.getSelectedColumn();
+    }
+
+    public boolean isInputEnabled() {
+        return inputEnabled;
+    }
+
+    /**
+     * Enables or disables selecting dolls, e.g. while the computer is thinking.
+     * @param inputEnabled
+     */
+    public void setInputEnabled(boolean inputEnabled) {
+        this.inputEnabled = inputEnabled;
     }
 
     /**
      * Public constructor initializes the controller class to connect logic and GUI boards based on the given size.
-     * @param size 
+     * @param size
      */
     public BreakThroughBoardGUI(int size) {
-        logicBoard = new Board(size);
-        boardPanel = new JPanel();
-        boardPanel.setLayout(new GridLayout(size, size));
-        guiBoard = new JButton[size][size];
-        this.selectedRow = -1;
-        this.selectedColumn = -1;
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                JButton button = new JButton();
-                button.addActionListener(new CellListener(row, column));
-                button.setPreferredSize(new Dimension(BUTTON_SIZE, BUTTON_SIZE));
-                guiBoard[row][column] = button;
-                boardPanel.add(button);
-            }
-        }
-        displayDolls();
+        this(size, size);
     }
 
-    class CellListener implements ActionListener {
+    /**
+     * Public constructor initializes the controller class to connect logic and GUI boards with the given number of rows and columns.
+     * @param rows
+     * @param columns
+     */
+    public BreakThroughBoardGUI(int rows, int columns) {
+        logicBoard = new Board(rows, columns);
+        boardPanel = new BoardPanel(logicBoard);
+        this.inputEnabled = true;
+        boardPanel.addMouseListener(new CellListener());
+        logicBoard.addBoardListener(new BoardListener() {
+            @Override
+            public void cellChanged(int row, int column) {
+                displayCell(row, column);
+            }
 
-        private final int row;
-        private final int column;
+            @Override
+            public void boardReset() {
+                displayDolls();
+            }
+        });
+    }
 
-        /**
-         * Public constructor initializes the CellListener implementing ActionListener based on the given row and column.
-         * @param row
-         * @param column 
-         */
-        public CellListener(int row, int column) {
-            this.row = row;
-            this.column = column;
-        }
+    /**
+     * Starts a new game on this board, reusing the existing panel.
+     */
+    public void newGame() {
+        inputEnabled = true;
+        logicBoard.reset();
+    }
+
+    class CellListener extends MouseAdapter {
 
         /**
-         * Override of the action performed to implement selecting of the cell.
-         * @param e 
+         * Override of the mouse click to implement selecting of the cell under the pointer.
+         * @param e
          */
         @Override
-        public void actionPerformed(ActionEvent e) {
+        public void mouseClicked(MouseEvent e) {
+            int row = boardPanel.rowAt(e.getY());
+            int column = boardPanel.columnAt(e.getX());
+            if (!inputEnabled || row == -1 || column == -1) {
+                return;
+            }
             if (logicBoard.firstTurn()) {
                 manageAction(row, column, Player.FIRST, Player.SECOND);
             } else {
@@ -99,15 +111,12 @@ public final class BreakThroughBoardGUI {
          * @param row
          * @param column
          * @param player
-         * @param opponent 
+         * @param opponent
          */
         private void manageAction(int row, int column, Player player, Player opponent) {
             if (logicBoard.getCell(row, column).getOwner() == player) {
                 if (logicBoard.noneSelected()) {
                     logicBoard.selectCell(row, column);
-                    selectedRow = row;
-                    selectedColumn = column;
-                    displaySelect(selectedRow, selectedColumn);
                 } else {
                     JOptionPane.showMessageDialog(null, "You have to play with the selected doll!", "Invalid Selection", JOptionPane.ERROR_MESSAGE);
                 }
@@ -120,42 +129,33 @@ public final class BreakThroughBoardGUI {
     }
 
     /**
-     * Displays the dolls on the GUI board.
+     * Displays the dolls and the selection of the whole GUI board.
      */
     public void displayDolls() {
-        for (int row = 0; row < logicBoard.getSize(); row++) {
-            for (int column = 0; column < logicBoard.getSize(); column++) {
-                if (logicBoard.getCell(row, column).getOwner() != Player.NONE) {
-                    if (logicBoard.getCell(row, column).getOwner() == Player.FIRST) {
-                        guiBoard[row][column].setText("O");
-                    } else if (logicBoard.getCell(row, column).getOwner() == Player.SECOND) {
-                        guiBoard[row][column].setText("X");
-                    }
-                } else {
-                    guiBoard[row][column].setText("");
-                }
-            }
-        }
+        boardPanel.repaint();
     }
 
     /**
-     * Displays the selected cell based on the given row and column.
+     * Displays the doll and the selection of the cell based on the given row and column; only that square is repainted.
      * @param row
-     * @param column 
+     * @param column
      */
-    public void displaySelect(int row, int column) {
-        if (logicBoard.getCell(row, column).isSelected()) {
-            guiBoard[row][column].setBackground(Color.yellow);
-        } else {
-            guiBoard[row][column].setBackground(null);
-        }
+    public void displayCell(int row, int column) {
+        boardPanel.repaintCell(row, column);
+    }
+
+    /**
+     * Highlights the doll and the square of the suggested move, or removes the highlight.
+     * @param move encoded move, or Move.NONE.
+     */
+    public void setHint(int move) {
+        boardPanel.setHint(move);
     }
 
     /**
-     * Resets the selected row and column to -1.
+     * Deselects the selected cell of the board; the board notifies the changed cell.
      */
     public void resetSelected() {
-        this.selectedRow = -1;
-        this.selectedColumn = -1;
+        logicBoard.clearSelection();
     }
 }
@@ -7,9 +7,20 @@ package breakthrough;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.ButtonGroup;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -17,6 +28,9 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
 
 /**
  *
@@ -29,10 +43,22 @@ public class BreakThroughGUI {
     private final int MIN_SIZE = 6;
     private final int MID_SIZE = 8;
     private final int MAX_SIZE = 10;
+    private final int LARGE_SIZE = 16;
+    private final int HUGE_SIZE = 32;
+    private final long THINK_TIME_MILLIS = 200;
 
     private final JFrame frame;
     private BreakThroughBoardGUI boardGUI;
     private final JPanel controlPanel;
+    private final JLabel turnLabel;
+    private final JLabel statusLabel;
+    private final Engine engine;
+    private boolean computerOpponent;
+    private SwingWorker<SearchResult, Void> computerMove;
+    private AtomicBoolean computerStop;
+    private GameRecordWriter recordWriter;
+    private final HintAnalysis hints;
+    private final JCheckBoxMenuItem hintItem;
 
     /**
      * Public constructor initializes the game.
@@ -45,12 +71,88 @@ public class BreakThroughGUI {
         frame.getContentPane().add(boardGUI.getBoardPanel(), BorderLayout.NORTH);
         JMenuBar menuBar = new JMenuBar();
         frame.setJMenuBar(menuBar);
+        JMenu gameMenu = new JMenu("Game");
+        menuBar.add(gameMenu);
+        JMenuItem saveItem = new JMenuItem("Save...");
+        saveItem.addActionListener((ActionEvent e) -> {
+            saveGame();
+        });
+        JMenuItem loadItem = new JMenuItem("Load...");
+        loadItem.addActionListener((ActionEvent e) -> {
+            loadGame();
+        });
+        JMenuItem replayItem = new JMenuItem("Replay current game");
+        replayItem.addActionListener((ActionEvent e) -> {
+            new ReplayViewer(GameHistory.of(boardGUI.getBoard()), "Replay of the current game");
+        });
+        JMenuItem undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        undoItem.addActionListener((ActionEvent e) -> {
+            undo();
+        });
+        JMenuItem redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        redoItem.addActionListener((ActionEvent e) -> {
+            redo();
+        });
+        gameMenu.add(undoItem);
+        gameMenu.add(redoItem);
+        gameMenu.addSeparator();
+        gameMenu.add(saveItem);
+        gameMenu.add(loadItem);
+        gameMenu.add(replayItem);
+
         JMenu boardSize = new JMenu("Board size");
         menuBar.add(boardSize);
 
         boardSize.add(createSizeMenuItem("6x6", MIN_SIZE));
         boardSize.add(createSizeMenuItem("8x8", MID_SIZE));
         boardSize.add(createSizeMenuItem("10x10", MAX_SIZE));
+        boardSize.addSeparator();
+        boardSize.add(createSizeMenuItem("16x16", LARGE_SIZE));
+        boardSize.add(createSizeMenuItem("32x32", HUGE_SIZE));
+        JMenuItem customSize = new JMenuItem("Custom...");
+        customSize.addActionListener((ActionEvent e) -> {
+            chooseCustomSize();
+        });
+        boardSize.add(customSize);
+
+        AlphaBetaEngine alphaBeta = new AlphaBetaEngine();
+        alphaBeta.setTablebase(openTablebase());
+        alphaBeta.setEvaluator(openEvaluator());
+        openOpeningBooks(alphaBeta);
+        engine = alphaBeta;
+        AlphaBetaEngine hintEngine = new AlphaBetaEngine();
+        hintEngine.setTablebase(alphaBeta.getTablebase());
+        hintEngine.setEvaluator(alphaBeta.getEvaluator());
+        openOpeningBooks(hintEngine);
+        hints = new HintAnalysis(hintEngine);
+        JMenu opponent = new JMenu("Opponent");
+        menuBar.add(opponent);
+        ButtonGroup opponentGroup = new ButtonGroup();
+        JRadioButtonMenuItem humanItem = new JRadioButtonMenuItem("Human", true);
+        humanItem.addActionListener((ActionEvent e) -> {
+            setComputerOpponent(false);
+        });
+        JRadioButtonMenuItem computerItem = new JRadioButtonMenuItem("Computer plays X");
+        computerItem.addActionListener((ActionEvent e) -> {
+            setComputerOpponent(true);
+        });
+        opponentGroup.add(humanItem);
+        opponentGroup.add(computerItem);
+        opponent.add(humanItem);
+        opponent.add(computerItem);
+
+        JMenu analysis = new JMenu("Analysis");
+        menuBar.add(analysis);
+        hintItem = new JCheckBoxMenuItem("Show hints");
+        hintItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_H, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        hintItem.addActionListener((ActionEvent e) -> {
+            hints.getPanel().setVisible(hintItem.isSelected());
+            frame.revalidate();
+            updateHint();
+        });
+        analysis.add(hintItem);
 
         JMenuItem exitMenu = new JMenuItem("Exit");
         menuBar.add(exitMenu);
@@ -63,19 +165,22 @@ public class BreakThroughGUI {
         controlPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
 
         JPanel turnPanel = new JPanel();
-        JLabel turnLabel = new JLabel();
+        turnLabel = new JLabel();
         turnLabel.setText(O_TURN_LABEL);
         turnPanel.add(turnLabel);
+        statusLabel = new JLabel();
+        turnPanel.add(statusLabel);
 
-        String directions[] = {"↑", "↓", "←", "→"};
-        for (String direction : directions) {
-            JButton button = new JButton(direction);
+        for (Direction direction : Direction.values()) {
+            JButton button = new JButton(direction.getSymbol());
             button.setPreferredSize(new Dimension(45, 45));
-            button.addActionListener(new DirectionListener(button.getText(), turnLabel));
+            button.addActionListener(new DirectionListener(direction, turnLabel));
             controlPanel.add(button);
         }
 
         controlPanel.add(turnPanel);
+        hints.getPanel().setVisible(false);
+        frame.getContentPane().add(hints.getPanel(), BorderLayout.EAST);
 
         frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
         frame.setVisible(true);
@@ -83,14 +188,17 @@ public class BreakThroughGUI {
 
     private class SizeOptionListener implements ActionListener {
 
-        private final int size;
+        private final int rows;
+        private final int columns;
 
         /**
-         * Public constructor initializes SizeOptionListener implementing ActionListener based on the given size.
-         * @param size 
+         * Public constructor initializes SizeOptionListener implementing ActionListener based on the given rows and columns.
+         * @param rows
+         * @param columns 
          */
-        public SizeOptionListener(int size) {
-            this.size = size;
+        public SizeOptionListener(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
         }
 
         /**
@@ -99,17 +207,16 @@ public class BreakThroughGUI {
          */
         @Override
         public void actionPerformed(ActionEvent e) {
-            frame.getContentPane().remove(boardGUI.getBoardPanel());
-            boardGUI = new BreakThroughBoardGUI(size);
-            frame.getContentPane().add(boardGUI.getBoardPanel(), BorderLayout.NORTH);
-            frame.revalidate();
+            cancelComputerMove();
+            turnLabel.setText(O_TURN_LABEL);
+            newGame(rows, columns);
         }
 
     }
 
     private class DirectionListener implements ActionListener {
 
-        private final String direction;
+        private final Direction direction;
         private final JLabel turnLabel;
 
         /**
@@ -117,7 +224,7 @@ public class BreakThroughGUI {
          * @param direction
          * @param turnLabel 
          */
-        public DirectionListener(String direction, JLabel turnLabel) {
+        public DirectionListener(Direction direction, JLabel turnLabel) {
             this.direction = direction;
             this.turnLabel = turnLabel;
         }
@@ -128,39 +235,296 @@ public class BreakThroughGUI {
          */
         @Override
         public void actionPerformed(ActionEvent e) {
-            try {
-                if (boardGUI.getSelectedRow() == -1 || boardGUI.getSelectedColumn() == -1) {
-                    JOptionPane.showMessageDialog(null, "Choose the doll first!", "Illegal behavior", JOptionPane.ERROR_MESSAGE);
-                } else {
-                    boolean successfulMove = boardGUI.getBoard().makeMove(direction, boardGUI.getSelectedRow(), boardGUI.getSelectedColumn());
-                    if (successfulMove) {
-                        boardGUI.getBoard().changeTurn();
-                        boardGUI.getBoard().selectCell(boardGUI.getSelectedRow(), boardGUI.getSelectedColumn());
-                        boardGUI.displayDolls();
-                        boardGUI.displaySelect(boardGUI.getSelectedRow(), boardGUI.getSelectedColumn());
-                        boardGUI.resetSelected();
-                        if (boardGUI.getBoard().firstTurn()) {
-                            turnLabel.setText(O_TURN_LABEL);
-                        } else {
-                            turnLabel.setText(X_TURN_LABEL);
-                        }
-
-                        Player currentResult = boardGUI.getBoard().getGameResult();
-                        if (currentResult == Player.FIRST) {
-                            handleGameOver("O player wins", turnLabel);
-                        } else if (currentResult == Player.SECOND) {
-                            handleGameOver("X player wins", turnLabel);
-                        }
-                    } else {
-                        JOptionPane.showMessageDialog(null, "Choose wisely!", "Invalid Move", JOptionPane.ERROR_MESSAGE);
+            if (!boardGUI.isInputEnabled()) {
+                JOptionPane.showMessageDialog(null, "Wait for the computer to move!", "Illegal behavior", JOptionPane.ERROR_MESSAGE);
+            } else if (boardGUI.getSelectedRow() == -1 || boardGUI.getSelectedColumn() == -1) {
+                JOptionPane.showMessageDialog(null, "Choose the doll first!", "Illegal behavior", JOptionPane.ERROR_MESSAGE);
+            } else {
+                MoveStatus status = boardGUI.getBoard().tryMove(direction, boardGUI.getSelectedRow(), boardGUI.getSelectedColumn());
+                if (status == MoveStatus.OK) {
+                    boardGUI.getBoard().changeTurn();
+                    boardGUI.resetSelected();
+                    if (!finishMove(turnLabel) && computerOpponent) {
+                        startComputerMove();
                     }
+                } else {
+                    JOptionPane.showMessageDialog(null, status.getMessage(direction), "Invalid Move", JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (WrongDirectionException ex) {
-                JOptionPane.showMessageDialog(null, ex.getMessage(), "Invalid Move", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
 
+    /**
+     * Updates the board and the turn label after a move and checks whether the game is over.
+     * @param turnLabel
+     * @return true if the move finished the game, otherwise, false.
+     */
+    private boolean finishMove(JLabel turnLabel) {
+        if (boardGUI.getBoard().firstTurn()) {
+            turnLabel.setText(O_TURN_LABEL);
+        } else {
+            turnLabel.setText(X_TURN_LABEL);
+        }
+
+        Player currentResult = boardGUI.getBoard().getGameResult();
+        if (currentResult != Player.NONE) {
+            recordGame(currentResult);
+        }
+        if (currentResult == Player.FIRST) {
+            handleGameOver("O player wins", turnLabel);
+            return true;
+        } else if (currentResult == Player.SECOND) {
+            handleGameOver("X player wins", turnLabel);
+            return true;
+        }
+        updateHint();
+        return false;
+    }
+
+    /**
+     * Switches between a human and the computer playing X; if it is X's turn, the computer moves at once.
+     * @param computer
+     */
+    private void setComputerOpponent(boolean computer) {
+        computerOpponent = computer;
+        if (!computer) {
+            cancelComputerMove();
+        } else if (!boardGUI.getBoard().firstTurn() && computerMove == null) {
+            startComputerMove();
+        }
+        updateHint();
+    }
+
+    /**
+     * Searches the move of X on a background thread, so the window stays responsive, and plays it on the event thread.
+     */
+    private void startComputerMove() {
+        BreakThroughBoardGUI thinkingBoard = boardGUI;
+        BitBoard position = new BitBoard(thinkingBoard.getBoard().getPosition());
+        thinkingBoard.setInputEnabled(false);
+        hints.stop();
+        AtomicBoolean stop = new AtomicBoolean();
+        computerStop = stop;
+        computerMove = new SwingWorker<SearchResult, Void>() {
+            @Override
+            protected SearchResult doInBackground() {
+                return engine.findMove(position, THINK_TIME_MILLIS, stop);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || thinkingBoard != boardGUI) {
+                    return;
+                }
+                computerMove = null;
+                thinkingBoard.setInputEnabled(true);
+                SearchResult result;
+                try {
+                    result = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    JOptionPane.showMessageDialog(null, ex.getMessage(), "Computer Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                if (result.getMove() == Move.NONE) {
+                    recordGame(Player.FIRST);
+                    handleGameOver("O player wins", turnLabel);
+                    return;
+                }
+                thinkingBoard.getBoard().makeMove(result.getMove());
+                statusLabel.setText("X: " + result);
+                finishMove(turnLabel);
+            }
+        };
+        computerMove.execute();
+    }
+
+    /**
+     * Stops the search of the computer, if there is one running; its move is discarded.
+     */
+    private void cancelComputerMove() {
+        if (computerMove != null) {
+            computerStop.set(true);
+            computerMove.cancel(false);
+            computerMove = null;
+            boardGUI.setInputEnabled(true);
+        }
+    }
+
+    /**
+     * Analyses the position in the background while it is the turn of a human player and hints are shown;
+     * otherwise, the analysis is stopped. A running analysis of another position is stopped and started again.
+     */
+    private void updateHint() {
+        Board board = boardGUI.getBoard();
+        if (hintItem.isSelected() && computerMove == null && board.getGameResult() == Player.NONE
+                && (!computerOpponent || board.firstTurn())) {
+            hints.analyse(boardGUI);
+        } else {
+            hints.stop();
+        }
+    }
+
+    /**
+     * Takes back the last move; against the computer, its reply is taken back too, so it is O's turn again.
+     * A search of the computer that is running is discarded.
+     */
+    private void undo() {
+        Board board = boardGUI.getBoard();
+        cancelComputerMove();
+        if (!board.undo()) {
+            statusLabel.setText("Nothing to undo");
+            return;
+        }
+        while (computerOpponent && !board.firstTurn() && board.undo()) {
+            // Take back until it is the turn of the human player.
+        }
+        turnLabel.setText(board.firstTurn() ? O_TURN_LABEL : X_TURN_LABEL);
+        statusLabel.setText("Move " + board.getPlies());
+        updateHint();
+    }
+
+    /**
+     * Makes the last move taken back by undo again; against the computer, its reply is made again too,
+     * or searched if it was not played yet.
+     */
+    private void redo() {
+        Board board = boardGUI.getBoard();
+        if (computerMove != null || !board.redo()) {
+            statusLabel.setText("Nothing to redo");
+            return;
+        }
+        while (computerOpponent && !board.firstTurn() && board.getGameResult() == Player.NONE && board.redo()) {
+            // Replay until it is the turn of the human player.
+        }
+        statusLabel.setText("Move " + board.getPlies());
+        if (!finishMove(turnLabel) && computerOpponent && !board.firstTurn()) {
+            startComputerMove();
+        }
+    }
+
+    /**
+     * Saves the current game with its moves to a game record file chosen by the user.
+     */
+    private void saveGame() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        GameHistory game = GameHistory.of(boardGUI.getBoard());
+        game.setPlayers("Human", computerOpponent ? "Computer" : "Human");
+        try {
+            game.save(chooser.getSelectedFile().toPath());
+            statusLabel.setText("Saved " + game.getPlies() + " moves");
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(null, ex.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Loads the last game of a game record file chosen by the user and continues it; a finished game is opened in the replay viewer instead.
+     */
+    private void loadGame() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        GameHistory game;
+        try {
+            game = GameHistory.load(chooser.getSelectedFile().toPath());
+        } catch (IOException | IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(null, ex.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (game.getWinner() != Player.NONE) {
+            new ReplayViewer(game, chooser.getSelectedFile().getName());
+            return;
+        }
+        cancelComputerMove();
+        newGame(game.getRows(), game.getColumns());
+        boardGUI.getBoard().restore(game, game.getPlies());
+        turnLabel.setText(boardGUI.getBoard().firstTurn() ? O_TURN_LABEL : X_TURN_LABEL);
+        statusLabel.setText("Loaded " + game.getPlies() + " moves");
+        if (computerOpponent && !boardGUI.getBoard().firstTurn()) {
+            startComputerMove();
+        }
+        updateHint();
+    }
+
+    /**
+     * Opens the endgame tablebase given by the system property breakthrough.tablebase, if there is one.
+     * @return the tablebase, or null.
+     */
+    private static Tablebase openTablebase() {
+        String file = System.getProperty("breakthrough.tablebase");
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Tablebase.open(Paths.get(file));
+        } catch (IOException ex) {
+            System.err.println("The tablebase could not be opened: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the network evaluation given by the system property breakthrough.evaluator, if there is one.
+     * @return the network, or null.
+     */
+    private static NetworkEvaluator openEvaluator() {
+        String file = System.getProperty("breakthrough.evaluator");
+        if (file == null) {
+            return null;
+        }
+        try {
+            return NetworkEvaluator.open(Paths.get(file));
+        } catch (IOException ex) {
+            System.err.println("The network could not be opened: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds the opening books given by the system property breakthrough.book, a list of files separated by the path separator.
+     * @param alphaBeta
+     */
+    private static void openOpeningBooks(AlphaBetaEngine alphaBeta) {
+        String files = System.getProperty("breakthrough.book");
+        if (files == null) {
+            return;
+        }
+        for (String file : files.split(File.pathSeparator)) {
+            try {
+                alphaBeta.addOpeningBook(OpeningBook.open(Paths.get(file)));
+            } catch (IOException ex) {
+                System.err.println("The opening book could not be opened: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends the finished game to the game record file, by default breakthrough-games.btr in the home directory
+     * or the file given by the system property breakthrough.records.
+     * @param winner
+     */
+    private void recordGame(Player winner) {
+        Board board = boardGUI.getBoard();
+        int[] moves = new int[board.getPlies()];
+        for (int ply = 0; ply < moves.length; ply++) {
+            moves[ply] = board.getMove(ply);
+        }
+        try {
+            if (recordWriter == null) {
+                Path path = Paths.get(System.getProperty("breakthrough.records", Paths.get(System.getProperty("user.home"), "breakthrough-games.btr").toString()));
+                recordWriter = new GameRecordWriter(path);
+            }
+            recordWriter.write(board.getRows(), board.getColumns(), "Human", computerOpponent ? "Computer" : "Human", winner, moves, moves.length);
+            recordWriter.flush();
+        } catch (IOException | IllegalArgumentException ex) {
+            statusLabel.setText("The game could not be recorded: " + ex.getMessage());
+        }
+    }
+
     /**
      * Initializes the menu item for the menu size tab.
      * @param label
@@ -169,7 +533,7 @@ public class BreakThroughGUI {
      */
     private JMenuItem createSizeMenuItem(String label, int size) {
         JMenuItem menuItem = new JMenuItem(label);
-        menuItem.addActionListener(new SizeOptionListener(size));
+        menuItem.addActionListener(new SizeOptionListener(size, size));
         return menuItem;
     }
 
@@ -179,11 +543,47 @@ public class BreakThroughGUI {
      * @param turnLabel 
      */
     private void handleGameOver(String message, JLabel turnLabel) {
+        cancelComputerMove();
+        hints.stop();
         JOptionPane.showMessageDialog(null, message, "Game Over", JOptionPane.INFORMATION_MESSAGE);
-        frame.getContentPane().remove(boardGUI.getBoardPanel());
-        boardGUI = new BreakThroughBoardGUI(MIN_SIZE);
-        frame.getContentPane().add(boardGUI.getBoardPanel(), BorderLayout.NORTH);
-        frame.revalidate();
+        newGame(MIN_SIZE, MIN_SIZE);
         turnLabel.setText(O_TURN_LABEL);
     }
+
+    /**
+     * Asks for a board size given as columns x rows, e.g. 12x16, and starts a new game of that size.
+     */
+    private void chooseCustomSize() {
+        String text = JOptionPane.showInputDialog(frame, "Board size as columns x rows, e.g. 12x16:", "Custom size", JOptionPane.QUESTION_MESSAGE);
+        if (text == null) {
+            return;
+        }
+        try {
+            int[] size = BreakThrough.parseSize(text.trim());
+            BitBoard.checkSize(size[0], size[1]);
+            cancelComputerMove();
+            turnLabel.setText(O_TURN_LABEL);
+            newGame(size[0], size[1]);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(null, "Unsupported board size: " + text, "Custom size", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Starts a new game of the given size; a board of the same size is reset in place instead of being rebuilt.
+     * @param rows
+     * @param columns 
+     */
+    private void newGame(int rows, int columns) {
+        hints.stop();
+        if (boardGUI.getBoard().getRows() == rows && boardGUI.getBoard().getColumns() == columns) {
+            boardGUI.newGame();
+        } else {
+            frame.getContentPane().remove(boardGUI.getBoardPanel());
+            boardGUI = new BreakThroughBoardGUI(rows, columns);
+            frame.getContentPane().add(boardGUI.getBoardPanel(), BorderLayout.NORTH);
+            frame.revalidate();
+        }
+        updateHint();
+    }
 }
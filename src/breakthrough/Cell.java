@@ -10,45 +10,34 @@ package breakthrough;
  */
 class Cell {
 
-    private Player owner;
-    private boolean selected;
+    private final Board board;
+    private final int row;
+    private final int column;
 
     /**
-     * Public constructor to initialize one cell based on the given Player who is the owner of the Cell.
-     * @param owner 
+     * Public constructor initializes a view of one cell of the given board based on the given row and column.
+     * @param board
+     * @param row
+     * @param column 
      */
-    public Cell(Player owner) {
-        this.owner = owner;
-        this.selected = false;
+    public Cell(Board board, int row, int column) {
+        this.board = board;
+        this.row = row;
+        this.column = column;
     }
 
     public Player getOwner() {
-        return owner;
+        return board.getPosition().getOwner(row, column);
     }
 
     public boolean isSelected() {
-        return selected;
+        return board.isSelected(row, column);
     }
 
     /**
      * Selects and deselects the cell.
      */
     public void select() {
-        this.selected = !this.selected;
-    }
-
-    /**
-     * Occupies the cell by NONE.
-     */
-    public void occupyByNone() {
-        this.owner = Player.NONE;
-    }
-    
-    /**
-     * Occupies the cell by the given player.
-     * @param player 
-     */
-    public void occupyByPlayer(Player player){
-        this.owner = player;
+        board.selectCell(row, column);
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+/**
+ * Direction of a move as seen on the screen, with the arrow shown on its button.
+ * @author artur
+ */
+public enum Direction {
+    UP("↑", 0), DOWN("↓", 0), LEFT("←", -1), RIGHT("→", 1);
+
+    private final String symbol;
+    private final int columnStep;
+
+    private Direction(String symbol, int columnStep) {
+        this.symbol = symbol;
+        this.columnStep = columnStep;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Gets the change of the column; the row always changes by one towards the opponent.
+     * @return -1, 0 or 1.
+     */
+    public int getColumnStep() {
+        return columnStep;
+    }
+
+    /**
+     * Finds the direction of the given arrow.
+     * @param symbol
+     * @return the direction, or null if the symbol is not an arrow of a direction.
+     */
+    public static Direction of(String symbol) {
+        if (symbol.length() != 1) {
+            return null;
+        }
+        switch (symbol.charAt(0)) {
+            case '↑':
+                return UP;
+            case '↓':
+                return DOWN;
+            case '←':
+                return LEFT;
+            case '→':
+                return RIGHT;
+            default:
+                return null;
+        }
+    }
+}
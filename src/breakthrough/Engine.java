@@ -0,0 +1,39 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Computer player choosing moves for the player whose turn it is.
+ * @author artur
+ */
+public interface Engine {
+
+    /**
+     * Searches the given position for at most the given time; the position is left unchanged.
+     * @param position
+     * @param budgetMillis wall-clock time the search may take.
+     * @return the best move found and the statistics of the search.
+     */
+    default SearchResult findMove(BitBoard position, long budgetMillis) {
+        return findMove(position, budgetMillis, new AtomicBoolean());
+    }
+
+    /**
+     * Searches the given position for at most the given time or until the given flag is set; the position is left unchanged.
+     * The flag belongs to this search only, so setting it before the search has started still stops it at once.
+     * @param position
+     * @param budgetMillis wall-clock time the search may take.
+     * @param stop flag of this search; once it is set, the search returns as soon as possible.
+     * @return the best move found and the statistics of the search.
+     */
+    SearchResult findMove(BitBoard position, long budgetMillis, AtomicBoolean stop);
+
+    /**
+     * Asks the search that was started last to return as soon as possible.
+     */
+    void stop();
+}
@@ -0,0 +1,348 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Microbenchmarks of the game logic on the bitboard core and on the original cell grid of ReferenceBoard.
+ * Every operation is warmed up first and then run in batches for a fixed time; the result of every call is consumed.
+ * ReferenceBoard only knows square boards, so rectangular boards are measured on the bitboard core alone.
+ * The same operations are measured under JMH by GameLogicBenchmark in jmh/, built with mvn -P jmh package.
+ * @author artur
+ */
+public class GameBenchmark {
+
+    private static final long WARM_UP_NANOS = 300_000_000L;
+    private static final long MEASURE_NANOS = 700_000_000L;
+    private static final int BATCH = 64;
+    private static final int SEARCH_DEPTH = 6;
+    private static final long SEED = 20231017L;
+
+    private final int[][] sizes;
+    private long sink;
+
+    /**
+     * Public constructor initializes the benchmarks of the given board sizes.
+     * @param sizes pairs of rows and columns.
+     */
+    public GameBenchmark(int[]... sizes) {
+        this.sizes = sizes;
+    }
+
+    /**
+     * Runs every benchmark for every size and prints the time per operation of both implementations.
+     * @param out
+     */
+    public void run(PrintStream out) {
+        out.printf("%-26s %6s %14s %14s %9s%n", "operation", "size", "bitboard ns", "reference ns", "speedup");
+        for (int[] dimensions : sizes) {
+            int rows = dimensions[0];
+            int columns = dimensions[1];
+            String size = columns + "x" + rows;
+            boolean square = rows == columns;
+            Game game = new Game(rows, columns);
+            BitBoard middle = game.position(game.length / 2);
+            ReferenceBoard referenceMiddle = square ? game.referencePosition(game.length / 2) : null;
+            Board board = new Board(rows, columns);
+            int[] moves = new int[middle.getMaxMoves()];
+            SplittableRandom random = new SplittableRandom(SEED);
+            BitBoard start = new BitBoard(rows, columns);
+            BitBoard scratch = new BitBoard(rows, columns);
+
+            compare(out, "construct", size, 1, () -> new Board(rows, columns).getRows(), square ? () -> new ReferenceBoard(rows).getSize() : null);
+            compare(out, "makeMove (per ply)", size, game.length, game::replay, square ? game::replayReference : null);
+            compare(out, "tryMove (per ply)", size, game.length, game::replayTyped, square ? game::replayReference : null);
+            compare(out, "makeMove + unmakeMove", size, game.length, game::makeUnmake, null);
+            compare(out, "rejected move", size, 1, () -> board.validateMove(Direction.LEFT, 1, 0).ordinal(),
+                    square ? () -> tryMove(new ReferenceBoard(rows), Board.LEFT, 1, 0) ? 1 : 0 : null);
+            compare(out, "getGameResult", size, 1, () -> middle.getWinner().ordinal(), square ? () -> referenceMiddle.getGameResult().ordinal() : null);
+            compare(out, "noneSelected", size, 1, () -> board.noneSelected() ? 1 : 0, square ? () -> referenceMiddle.noneSelected() ? 1 : 0 : null);
+            compare(out, "legal moves", size, 1, () -> middle.generateMoves(moves), square ? () -> referenceMoves(referenceMiddle) : null);
+            compare(out, "random playout", size, 1, () -> playout(start, scratch, moves, random), square ? () -> referencePlayout(rows, random) : null);
+
+            AlphaBetaEngine engine = new AlphaBetaEngine();
+            engine.setMaxDepth(SEARCH_DEPTH);
+            engine.findMove(new BitBoard(rows, columns), Long.MAX_VALUE);
+            engine.getTable().clear();
+            SearchResult result = engine.findMove(new BitBoard(rows, columns), Long.MAX_VALUE);
+            out.printf("%-26s %6s %14s %14s %9s%n", "search nodes/s (depth " + SEARCH_DEPTH + ")", size, result.getNodesPerSecond(), "-", "-");
+        }
+        if (sink == 42) {
+            out.println();
+        }
+    }
+
+    /**
+     * Measures and prints one operation of both implementations.
+     * @param out
+     * @param name
+     * @param size board size as columns x rows.
+     * @param units number of operations one call performs, e.g. the plies of a replayed game.
+     * @param current operation on the bitboard core.
+     * @param reference operation on the reference board, or null if it has no counterpart.
+     */
+    private void compare(PrintStream out, String name, String size, int units, LongSupplier current, LongSupplier reference) {
+        double currentNanos = measure(current) / units;
+        if (reference == null) {
+            out.printf("%-26s %6s %14.1f %14s %9s%n", name, size, currentNanos, "-", "-");
+        } else {
+            double referenceNanos = measure(reference) / units;
+            out.printf("%-26s %6s %14.1f %14.1f %8.1fx%n", name, size, currentNanos, referenceNanos, referenceNanos / currentNanos);
+        }
+    }
+
+    /**
+     * Runs the operation until the warm-up time has passed, then in batches until the measuring time has passed.
+     * @param operation
+     * @return average nanoseconds per call.
+     */
+    private double measure(LongSupplier operation) {
+        long warmUpEnd = System.nanoTime() + WARM_UP_NANOS;
+        while (System.nanoTime() < warmUpEnd) {
+            sink += operation.getAsLong();
+        }
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                sink += operation.getAsLong();
+            }
+            calls += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        return (double) elapsed / calls;
+    }
+
+    /**
+     * Plays random moves from the starting position until the game is decided.
+     * @param start starting position.
+     * @param position scratch position.
+     * @param moves move buffer.
+     * @param random
+     * @return number of plies.
+     */
+    static long playout(BitBoard start, BitBoard position, int[] moves, SplittableRandom random) {
+        position.copyFrom(start);
+        long plies = 0;
+        while (position.getWinner() == Player.NONE) {
+            int count = position.generateMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            position.makeMove(moves[random.nextInt(count)]);
+            plies++;
+        }
+        return plies;
+    }
+
+    /**
+     * Plays random moves on a reference board, finding the legal moves by trying them on copies.
+     * @param size
+     * @param random
+     * @return number of plies.
+     */
+    static long referencePlayout(int size, SplittableRandom random) {
+        ReferenceBoard board = new ReferenceBoard(size);
+        String[] directions = {Board.UP, Board.DOWN, Board.LEFT, Board.RIGHT};
+        int[] candidates = new int[6 * size];
+        long plies = 0;
+        while (board.getGameResult() == Player.NONE) {
+            int count = 0;
+            Player player = board.firstTurn() ? Player.FIRST : Player.SECOND;
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    if (board.getOwner(row, column) == player) {
+                        for (int direction = 0; direction < directions.length; direction++) {
+                            if (tryMove(new ReferenceBoard(board), directions[direction], row, column)) {
+                                candidates[count++] = (row * size + column) * 4 + direction;
+                            }
+                        }
+                    }
+                }
+            }
+            if (count == 0) {
+                break;
+            }
+            int chosen = candidates[random.nextInt(count)];
+            tryMove(board, directions[chosen % 4], chosen / 4 / size, chosen / 4 % size);
+            board.changeTurn();
+            plies++;
+        }
+        return plies;
+    }
+
+    /**
+     * Counts the legal moves of a reference board the way it was only possible before: by trying every move on a copy.
+     * @param board
+     * @return number of legal moves.
+     */
+    static long referenceMoves(ReferenceBoard board) {
+        String[] directions = {Board.UP, Board.DOWN, Board.LEFT, Board.RIGHT};
+        Player player = board.firstTurn() ? Player.FIRST : Player.SECOND;
+        long count = 0;
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int column = 0; column < board.getSize(); column++) {
+                if (board.getOwner(row, column) == player) {
+                    for (String direction : directions) {
+                        if (tryMove(new ReferenceBoard(board), direction, row, column)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tries a move on the reference board.
+     * @param board
+     * @param direction
+     * @param row
+     * @param column
+     * @return true if the move was made, otherwise, false.
+     */
+    private static boolean tryMove(ReferenceBoard board, String direction, int row, int column) {
+        try {
+            return board.makeMove(direction, row, column);
+        } catch (WrongDirectionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * A random game recorded once, replayed by the move benchmarks.
+     */
+    static final class Game {
+
+        private final int rows;
+        private final int columns;
+        private final int[] moves;
+        private final Direction[] directions;
+        private final int length;
+        private final BitBoard position;
+
+        /**
+         * Public constructor records a random game of the given size.
+         * @param rows
+         * @param columns
+         */
+        public Game(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            BitBoard board = new BitBoard(rows, columns);
+            int[] buffer = new int[board.getMaxMoves()];
+            moves = new int[4 * rows * columns];
+            directions = new Direction[moves.length];
+            SplittableRandom random = new SplittableRandom(SEED);
+            int plies = 0;
+            while (board.getWinner() == Player.NONE) {
+                int count = board.generateMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                moves[plies] = buffer[random.nextInt(count)];
+                directions[plies] = Move.direction(moves[plies], columns, board.firstTurn());
+                board.makeMove(moves[plies++]);
+            }
+            length = plies;
+            position = new BitBoard(rows, columns);
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Gets the position after the given number of plies.
+         * @param plies
+         * @return new position.
+         */
+        public BitBoard position(int plies) {
+            BitBoard board = new BitBoard(rows, columns);
+            for (int i = 0; i < plies; i++) {
+                board.makeMove(moves[i]);
+            }
+            return board;
+        }
+
+        /**
+         * Gets the reference board after the given number of plies.
+         * @param plies
+         * @return new reference board.
+         */
+        public ReferenceBoard referencePosition(int plies) {
+            ReferenceBoard board = new ReferenceBoard(rows);
+            for (int i = 0; i < plies; i++) {
+                tryMove(board, directions[i].getSymbol(), Move.from(moves[i]) / columns, Move.from(moves[i]) % columns);
+                board.changeTurn();
+            }
+            return board;
+        }
+
+        /**
+         * Replays the game on a new Board through the string API.
+         * @return hash of the final position.
+         */
+        public long replay() {
+            Board board = new Board(rows, columns);
+            for (int i = 0; i < length; i++) {
+                try {
+                    board.makeMove(directions[i].getSymbol(), Move.from(moves[i]) / columns, Move.from(moves[i]) % columns);
+                } catch (WrongDirectionException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                board.changeTurn();
+            }
+            return board.getPosition().getHash();
+        }
+
+        /**
+         * Replays the game on a new Board through the typed API.
+         * @return hash of the final position.
+         */
+        public long replayTyped() {
+            Board board = new Board(rows, columns);
+            for (int i = 0; i < length; i++) {
+                if (board.tryMove(directions[i], Move.from(moves[i]) / columns, Move.from(moves[i]) % columns) != MoveStatus.OK) {
+                    throw new IllegalStateException("Move " + i + " was rejected!");
+                }
+                board.changeTurn();
+            }
+            return board.getPosition().getHash();
+        }
+
+        /**
+         * Replays the game on a new ReferenceBoard.
+         * @return the final result.
+         */
+        public long replayReference() {
+            ReferenceBoard board = new ReferenceBoard(rows);
+            for (int i = 0; i < length; i++) {
+                tryMove(board, directions[i].getSymbol(), Move.from(moves[i]) / columns, Move.from(moves[i]) % columns);
+                board.changeTurn();
+            }
+            return board.getGameResult().ordinal();
+        }
+
+        /**
+         * Makes every move of the game and takes them all back on the same position.
+         * @return hash of the final position.
+         */
+        public long makeUnmake() {
+            for (int i = 0; i < length; i++) {
+                position.makeMove(moves[i]);
+            }
+            for (int i = 0; i < length; i++) {
+                position.unmakeMove();
+            }
+            return position.getHash();
+        }
+    }
+}
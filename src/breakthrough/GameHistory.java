@@ -0,0 +1,207 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The moves of one game with a snapshot of the position every CHECKPOINT_INTERVAL plies.
+ * Seeking to a move restores the nearest checkpoint before it and replays at most CHECKPOINT_INTERVAL - 1 moves,
+ * so it takes the same time at move 10 and at move 10000. A checkpoint only keeps the packed dolls, the turn and the hash,
+ * about 48 bytes on boards of up to 64 squares.
+ * @author artur
+ */
+public class GameHistory {
+
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    private final int rows;
+    private final int columns;
+    private final BitBoard tip;
+    private final List<PositionSnapshot> checkpoints;
+    private int[] moves;
+    private int plies;
+    private Player winner;
+    private String firstPlayer;
+    private String secondPlayer;
+
+    /**
+     * Public constructor initializes an empty game of the given size.
+     * @param rows
+     * @param columns
+     */
+    public GameHistory(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        tip = new BitBoard(rows, columns);
+        checkpoints = new ArrayList<>();
+        checkpoints.add(PositionSnapshot.of(tip));
+        moves = new int[4 * rows * columns];
+        winner = Player.NONE;
+        firstPlayer = "";
+        secondPlayer = "";
+    }
+
+    /**
+     * Creates the history of the game played so far on the given board.
+     * @param board
+     * @return the history of the board.
+     */
+    public static GameHistory of(Board board) {
+        GameHistory history = new GameHistory(board.getRows(), board.getColumns());
+        for (int ply = 0; ply < board.getPlies(); ply++) {
+            history.add(board.getMove(ply));
+        }
+        return history;
+    }
+
+    /**
+     * Creates the history of the current record of the given reader.
+     * @param reader
+     * @return the history of the record.
+     */
+    public static GameHistory of(GameRecordReader reader) {
+        GameHistory history = new GameHistory(reader.getRows(), reader.getColumns());
+        for (int ply = 0; ply < reader.getPlies(); ply++) {
+            history.add(reader.getMove(ply));
+        }
+        history.winner = reader.getWinner();
+        history.firstPlayer = reader.getFirstPlayer();
+        history.secondPlayer = reader.getSecondPlayer();
+        return history;
+    }
+
+    /**
+     * Loads the last game of the given game record file.
+     * @param path
+     * @return the history of the last game.
+     * @throws IOException if the file cannot be read or holds no game.
+     */
+    public static GameHistory load(Path path) throws IOException {
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            long last = -1;
+            while (reader.next()) {
+                last = reader.getRecordStart();
+            }
+            if (last == -1 || !reader.seek(last)) {
+                throw new IOException("There is no game in " + path);
+            }
+            return of(reader);
+        }
+    }
+
+    /**
+     * Saves the game as the only record of the given file, replacing its content. The record is written to a temporary file
+     * in the same directory first, which then takes the place of the file, so a failed write leaves the old file as it was.
+     * @param path
+     * @throws IOException
+     */
+    public void save(Path path) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (GameRecordWriter writer = new GameRecordWriter(temporary)) {
+                writer.write(rows, columns, firstPlayer, secondPlayer, getWinner(), moves, plies);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Appends a legal move of the player whose turn it is at the end of the game.
+     * @param move
+     */
+    public void add(int move) {
+        if (!tip.isLegal(move)) {
+            throw new IllegalArgumentException("Move " + (plies + 1) + " is not legal!");
+        }
+        if (plies == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * moves.length);
+        }
+        moves[plies++] = move;
+        tip.makeMove(move);
+        if (plies % CHECKPOINT_INTERVAL == 0) {
+            checkpoints.add(PositionSnapshot.of(tip));
+        }
+    }
+
+    /**
+     * Sets the given position to the position after the given number of plies.
+     * @param ply from 0 for the starting position to getPlies().
+     * @param position board of the size of the game; its undo stack holds the moves replayed from the checkpoint afterwards.
+     */
+    public void seek(int ply, BitBoard position) {
+        if (ply < 0 || ply > plies) {
+            throw new IndexOutOfBoundsException(ply);
+        }
+        int checkpoint = ply / CHECKPOINT_INTERVAL;
+        checkpoints.get(checkpoint).restore(position);
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < ply; i++) {
+            position.makeMove(moves[i]);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Gets a move of the game.
+     * @param ply from 0 for the first move to getPlies() - 1 for the last one.
+     * @return the encoded move.
+     */
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= plies) {
+            throw new IndexOutOfBoundsException(ply);
+        }
+        return moves[ply];
+    }
+
+    /**
+     * Gets the result of the game: the winner on the board, or the result stored with a record, e.g. for a game lost without a legal move.
+     * @return FIRST, SECOND or NONE.
+     */
+    public Player getWinner() {
+        return tip.getWinner() != Player.NONE ? tip.getWinner() : winner;
+    }
+
+    public void setWinner(Player winner) {
+        this.winner = winner;
+    }
+
+    public String getFirstPlayer() {
+        return firstPlayer;
+    }
+
+    public String getSecondPlayer() {
+        return secondPlayer;
+    }
+
+    /**
+     * Sets the names of the players stored with the game.
+     * @param firstPlayer
+     * @param secondPlayer
+     */
+    public void setPlayers(String firstPlayer, String secondPlayer) {
+        this.firstPlayer = firstPlayer;
+        this.secondPlayer = secondPlayer;
+    }
+}
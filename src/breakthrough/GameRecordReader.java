@@ -0,0 +1,220 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cursor over a game record file written by GameRecordWriter.
+ * The file is memory-mapped in windows of up to a gigabyte, so files of any length can be read; next() moves to the following record
+ * and the getters decode the fields of the current record straight from the mapped bytes without creating objects per game.
+ * A record never straddles two windows: when it does not fit, the window is moved to start at the record.
+ * @author artur
+ */
+public class GameRecordReader implements Closeable {
+
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final Player[] PLAYERS = Player.values();
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long recordStart;
+    private int recordLength;
+    private int position;
+    private int rows;
+    private int columns;
+    private int plies;
+    private int firstNameOffset;
+    private int secondNameOffset;
+    private int movesOffset;
+    private int bitsPerMove;
+
+    /**
+     * Public constructor opens the given file and checks its header; the cursor is placed before the first record.
+     * @param path
+     * @throws IOException if the file cannot be read or is not a game record file.
+     */
+    public GameRecordReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        if (fileSize < GameRecordWriter.FILE_HEADER_BYTES) {
+            channel.close();
+            throw new IOException("Not a game record file: " + path);
+        }
+        map(0, GameRecordWriter.FILE_HEADER_BYTES);
+        if (window.getInt(0) != GameRecordWriter.MAGIC || window.getShort(4) != GameRecordWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a game record file of version " + GameRecordWriter.VERSION + ": " + path);
+        }
+        recordStart = GameRecordWriter.FILE_HEADER_BYTES;
+        recordLength = 0;
+    }
+
+    /**
+     * Moves to the next record.
+     * @return true if there is a next record, otherwise, false.
+     * @throws IOException if the record is cut off or cannot be mapped.
+     */
+    public boolean next() throws IOException {
+        long start = recordStart + recordLength;
+        if (start + 4 > fileSize) {
+            return false;
+        }
+        ensure(start, 4);
+        int length = window.getInt((int) (start - windowStart));
+        if (length < 4 || start + length > fileSize) {
+            throw new IOException("Damaged game record at byte " + start);
+        }
+        ensure(start, length);
+        recordStart = start;
+        recordLength = length;
+        position = (int) (start - windowStart);
+        rows = Short.toUnsignedInt(window.getShort(position + 4));
+        columns = Short.toUnsignedInt(window.getShort(position + 6));
+        firstNameOffset = position + 9;
+        secondNameOffset = firstNameOffset + 1 + Byte.toUnsignedInt(window.get(firstNameOffset));
+        int pliesOffset = secondNameOffset + 1 + Byte.toUnsignedInt(window.get(secondNameOffset));
+        plies = window.getInt(pliesOffset);
+        movesOffset = pliesOffset + 4;
+        bitsPerMove = GameRecordWriter.squareBits(rows * columns) + GameRecordWriter.DIRECTION_BITS;
+        return true;
+    }
+
+    /**
+     * Moves to the record starting at the given offset.
+     * @param recordStart offset returned by getRecordStart().
+     * @return true if there is a record at the offset, otherwise, false.
+     * @throws IOException if the record is cut off or cannot be mapped.
+     */
+    public boolean seek(long recordStart) throws IOException {
+        if (recordStart < GameRecordWriter.FILE_HEADER_BYTES) {
+            throw new IllegalArgumentException("There is no record at byte " + recordStart);
+        }
+        this.recordStart = recordStart;
+        this.recordLength = 0;
+        return next();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Gets the offset of the current record in the file.
+     * @return byte offset of the record.
+     */
+    public long getRecordStart() {
+        return recordStart;
+    }
+
+    public Player getWinner() {
+        return PLAYERS[window.get(position + 8)];
+    }
+
+    /**
+     * Decodes the name of the FIRST player; unlike the other getters this creates a string.
+     * @return the name.
+     */
+    public String getFirstPlayer() {
+        return name(firstNameOffset);
+    }
+
+    /**
+     * Decodes the name of the SECOND player; unlike the other getters this creates a string.
+     * @return the name.
+     */
+    public String getSecondPlayer() {
+        return name(secondNameOffset);
+    }
+
+    /**
+     * Decodes one move of the current record.
+     * @param ply from 0 to getPlies() - 1.
+     * @return the encoded move.
+     */
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= plies) {
+            throw new IndexOutOfBoundsException(ply);
+        }
+        long bit = (long) ply * bitsPerMove;
+        int value = 0;
+        for (int i = 0; i < bitsPerMove; i++, bit++) {
+            value |= ((window.get(movesOffset + (int) (bit >>> 3)) >>> (bit & 7)) & 1) << i;
+        }
+        int from = value >>> GameRecordWriter.DIRECTION_BITS;
+        int direction = value & ((1 << GameRecordWriter.DIRECTION_BITS) - 1);
+        int forward = (ply & 1) == 0 ? columns : -columns;
+        return Move.encode(from, from + forward + direction - 1);
+    }
+
+    /**
+     * Replays the current record on the given position, which is reset to the starting position first.
+     * @param position board of the size of the record.
+     */
+    public void replay(BitBoard position) {
+        if (position.getRows() != rows || position.getColumns() != columns) {
+            throw new IllegalArgumentException("The record is " + columns + "x" + rows + "!");
+        }
+        position.reset();
+        for (int ply = 0; ply < plies; ply++) {
+            position.makeMove(getMove(ply));
+        }
+    }
+
+    /**
+     * Decodes a length-prefixed UTF-8 name at the given offset of the window.
+     * @param offset
+     * @return the name.
+     */
+    private String name(int offset) {
+        byte[] bytes = new byte[Byte.toUnsignedInt(window.get(offset))];
+        window.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure the given bytes of the file are inside the current window, mapping a new window starting at them if they are not.
+     * @param start
+     * @param length
+     * @throws IOException
+     */
+    private void ensure(long start, int length) throws IOException {
+        if (window == null || start < windowStart || start + length > windowStart + window.limit()) {
+            map(start, Math.max(length, Math.min(WINDOW_BYTES, fileSize - start)));
+        }
+    }
+
+    /**
+     * Maps the given part of the file.
+     * @param start
+     * @param length
+     * @throws IOException
+     */
+    private void map(long start, long length) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
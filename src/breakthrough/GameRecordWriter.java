@@ -0,0 +1,160 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends finished games to a binary game record file, one record after the other, without keeping them in memory.
+ * The file starts with the magic number and the version of the format. Every record holds:
+ * its length in bytes (int), the rows and columns (two shorts), the winner (byte), the names of the FIRST and SECOND player
+ * (byte length and UTF-8 bytes each), the number of plies (int) and the packed moves.
+ * A move takes a fixed number of bits per board size: the square it starts from and two bits for left, forward or right;
+ * the player alternates from FIRST, so the target square follows. The moves are packed least significant bit first.
+ * @author artur
+ */
+public class GameRecordWriter implements Closeable {
+
+    static final int MAGIC = 0x42544752;
+    static final short VERSION = 1;
+    static final int FILE_HEADER_BYTES = 6;
+    static final int DIRECTION_BITS = 2;
+    private static final int MAX_NAME_BYTES = 255;
+
+    private final DataOutputStream out;
+    private byte[] packed = new byte[64];
+
+    /**
+     * Public constructor opens the given file for appending; a new or empty file gets the file header first.
+     * @param path
+     * @throws IOException
+     */
+    public GameRecordWriter(Path path) throws IOException {
+        boolean empty = !Files.exists(path) || Files.size(path) == 0;
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 1 << 16));
+        if (empty) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+    }
+
+    /**
+     * Gets the number of bits of the square a move starts from.
+     * @param squares
+     * @return bits needed to store every square of the board.
+     */
+    static int squareBits(int squares) {
+        return 32 - Integer.numberOfLeadingZeros(squares - 1);
+    }
+
+    /**
+     * Appends the game played on the given position from the starting position, as recorded on its undo stack.
+     * @param position
+     * @param firstPlayer name of the FIRST player.
+     * @param secondPlayer name of the SECOND player.
+     * @param winner the result of the game, NONE for an unfinished or drawn game.
+     * @throws IOException
+     */
+    public void write(BitBoard position, String firstPlayer, String secondPlayer, Player winner) throws IOException {
+        int plies = position.getUndoCount();
+        int[] moves = new int[plies];
+        for (int ply = 0; ply < plies; ply++) {
+            moves[ply] = position.getMove(ply);
+        }
+        write(position.getRows(), position.getColumns(), firstPlayer, secondPlayer, winner, moves, plies);
+    }
+
+    /**
+     * Appends a game; it is safe to call from several threads.
+     * @param rows
+     * @param columns
+     * @param firstPlayer name of the FIRST player.
+     * @param secondPlayer name of the SECOND player.
+     * @param winner the result of the game, NONE for an unfinished or drawn game.
+     * @param moves encoded moves alternating from the FIRST player.
+     * @param plies number of moves.
+     * @throws IOException
+     */
+    public synchronized void write(int rows, int columns, String firstPlayer, String secondPlayer, Player winner, int[] moves, int plies) throws IOException {
+        byte[] first = name(firstPlayer);
+        byte[] second = name(secondPlayer);
+        int packedBytes = pack(rows, columns, moves, plies);
+        out.writeInt(4 + 2 + 2 + 1 + 1 + first.length + 1 + second.length + 4 + packedBytes);
+        out.writeShort(rows);
+        out.writeShort(columns);
+        out.writeByte(winner.ordinal());
+        out.writeByte(first.length);
+        out.write(first);
+        out.writeByte(second.length);
+        out.write(second);
+        out.writeInt(plies);
+        out.write(packed, 0, packedBytes);
+    }
+
+    /**
+     * Packs the moves into the bit buffer.
+     * @param rows
+     * @param columns
+     * @param moves
+     * @param plies
+     * @return number of bytes used.
+     */
+    private int pack(int rows, int columns, int[] moves, int plies) {
+        int bitsPerMove = squareBits(rows * columns) + DIRECTION_BITS;
+        int bytes = (int) (((long) plies * bitsPerMove + 7) >>> 3);
+        if (packed.length < bytes) {
+            packed = new byte[Math.max(bytes, 2 * packed.length)];
+        }
+        Arrays.fill(packed, 0, bytes, (byte) 0);
+        long bit = 0;
+        for (int ply = 0; ply < plies; ply++) {
+            int from = Move.from(moves[ply]);
+            int forward = (ply & 1) == 0 ? columns : -columns;
+            int direction = Move.to(moves[ply]) - from - forward + 1;
+            if (direction < 0 || direction > 2) {
+                throw new IllegalArgumentException("Move " + ply + " is not a move of " + ((ply & 1) == 0 ? "the first" : "the second") + " player!");
+            }
+            long value = ((long) from << DIRECTION_BITS) | direction;
+            for (int i = 0; i < bitsPerMove; i++, bit++) {
+                if ((value >>> i & 1) != 0) {
+                    packed[(int) (bit >>> 3)] |= 1 << (bit & 7);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes a player name, cut to the bytes the format allows.
+     * @param name
+     * @return UTF-8 bytes of the name.
+     */
+    private static byte[] name(String name) {
+        byte[] bytes = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_NAME_BYTES ? bytes : Arrays.copyOf(bytes, MAX_NAME_BYTES);
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
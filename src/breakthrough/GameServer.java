@@ -0,0 +1,339 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Hosts many games at once behind a line-based text protocol over TCP on localhost.
+ * Every connection is a session owning one Board; all sessions are served by a single thread waiting on a selector,
+ * so an idle game costs its board and two small buffers but no thread.
+ * Requests and responses are lines of ASCII text:
+ * "NEW [size]" starts a game (size n or columns x rows, 8 by default) and answers "OK";
+ * "MOVE row column direction" moves the doll of the player whose turn it is, where direction is UP, DOWN, LEFT or RIGHT,
+ * and answers "OK", "OK O" or "OK X" when the move wins, or "ERR" followed by the MoveStatus or another reason;
+ * "BOARD" answers "OK" and the rows of the board separated by slashes; "QUIT" answers "BYE" and closes the connection.
+ * Several requests may be sent without waiting; the responses come in the same order. While responses are waiting
+ * to be sent, no further requests are read, so a client that sends without reading cannot make its responses pile up.
+ * @author artur
+ */
+public class GameServer implements Closeable {
+
+    private static final int BUFFER_BYTES = 256;
+    private static final int DEFAULT_SIZE = 8;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread loop;
+    private volatile boolean running;
+    private volatile int sessions;
+
+    /**
+     * Public constructor binds the server to the given port of the loopback address; the server runs after start().
+     * @param port the port, or 0 for any free port.
+     * @throws IOException
+     */
+    public GameServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        loop = new Thread(this::run, "game server");
+    }
+
+    /**
+     * Starts serving on a thread of its own.
+     */
+    public void start() {
+        running = true;
+        loop.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of open sessions.
+     * @return sessions.
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Waits for the server thread, e.g. when the server runs in the foreground.
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        loop.join();
+    }
+
+    /**
+     * Serves the sessions until the server is closed.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                session.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.flush();
+                            }
+                        } catch (IOException ex) {
+                            session.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ex) {
+                    // The server shuts down anyway.
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts every waiting connection as a new session.
+     * @throws IOException
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Session session = new Session(channel);
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            sessions++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (loop.isAlive() && Thread.currentThread() != loop) {
+            try {
+                loop.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        selector.close();
+        serverChannel.close();
+    }
+
+    /**
+     * One connection with its game.
+     */
+    private final class Session {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        private SelectionKey key;
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        private Board board;
+        private boolean quitting;
+
+        /**
+         * Public constructor initializes the session of the given connection without a game.
+         * @param channel
+         */
+        public Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what has arrived and answers every complete line.
+         * @throws IOException
+         */
+        public void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            int lineStart = in.position();
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    answer(new String(in.array(), lineStart, i - lineStart, StandardCharsets.US_ASCII).trim());
+                    lineStart = i + 1;
+                }
+            }
+            in.position(lineStart);
+            in.compact();
+            if (!in.hasRemaining()) {
+                in.clear();
+                respond("ERR LINE_TOO_LONG");
+            }
+            flush();
+        }
+
+        /**
+         * Writes the waiting responses; if they do not fit, stops reading requests and waits for the connection to become writable.
+         * @throws IOException
+         */
+        public void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            if (out.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (quitting) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Closes the connection and ends the session.
+         */
+        public void close() {
+            if (key.isValid()) {
+                key.cancel();
+                sessions--;
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // The session is over either way.
+            }
+        }
+
+        /**
+         * Carries out one request.
+         * @param line
+         */
+        private void answer(String line) {
+            String[] words = line.split(" +");
+            switch (words[0]) {
+                case "NEW":
+                    newGame(words);
+                    break;
+                case "MOVE":
+                    move(words);
+                    break;
+                case "BOARD":
+                    respond(board == null ? "ERR NO_GAME" : "OK " + board.getPosition().toString().trim().replace('\n', '/'));
+                    break;
+                case "QUIT":
+                    respond("BYE");
+                    quitting = true;
+                    break;
+                default:
+                    respond("ERR UNKNOWN_COMMAND");
+            }
+        }
+
+        /**
+         * Starts a game, reusing the board of the previous game of the same size.
+         * @param words
+         */
+        private void newGame(String[] words) {
+            int[] size;
+            try {
+                size = words.length > 1 ? BreakThrough.parseSize(words[1]) : new int[]{DEFAULT_SIZE, DEFAULT_SIZE};
+                if (board != null && board.getRows() == size[0] && board.getColumns() == size[1]) {
+                    board.reset();
+                } else {
+                    board = new Board(size[0], size[1]);
+                }
+            } catch (IllegalArgumentException ex) {
+                respond("ERR SIZE");
+                return;
+            }
+            respond("OK");
+        }
+
+        /**
+         * Moves a doll of the player whose turn it is.
+         * @param words
+         */
+        private void move(String[] words) {
+            if (board == null) {
+                respond("ERR NO_GAME");
+                return;
+            }
+            if (board.getGameResult() != Player.NONE) {
+                respond("ERR GAME_OVER");
+                return;
+            }
+            int row;
+            int column;
+            Direction direction;
+            try {
+                row = Integer.parseInt(words[1]);
+                column = Integer.parseInt(words[2]);
+                direction = Direction.valueOf(words[3]);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+                respond("ERR SYNTAX");
+                return;
+            }
+            if (row < 0 || row >= board.getRows() || column < 0 || column >= board.getColumns()) {
+                respond("ERR SYNTAX");
+                return;
+            }
+            if (board.getPosition().getOwner(row, column) != (board.firstTurn() ? Player.FIRST : Player.SECOND)) {
+                respond("ERR NOT_YOUR_DOLL");
+                return;
+            }
+            MoveStatus status = board.tryMove(direction, row, column);
+            if (status != MoveStatus.OK) {
+                respond("ERR " + status);
+                return;
+            }
+            board.changeTurn();
+            Player winner = board.getGameResult();
+            respond(winner == Player.FIRST ? "OK O" : winner == Player.SECOND ? "OK X" : "OK");
+        }
+
+        /**
+         * Queues a response line.
+         * @param line
+         */
+        private void respond(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+            if (out.remaining() < bytes.length + 1) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * out.capacity(), out.position() + bytes.length + 1));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put(bytes).put((byte) '\n');
+        }
+    }
+}
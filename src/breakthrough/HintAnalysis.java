@@ -0,0 +1,174 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+
+/**
+ * Searches the position on the board in the background while the player thinks and shows the best move found so far
+ * in a side panel and as a highlight on the board. The search deepens until it is stopped, the game is decided or the
+ * budget runs out; every completed iteration is published, and the results published before the event thread gets to them
+ * are coalesced by the SwingWorker, so only the latest is shown. The searches run one after another on their own thread,
+ * and every search has its own stop flag, so a search that is stopped before it has even started returns at once
+ * and the next one starts without delay. Must be used on the event thread.
+ * @author artur
+ */
+public class HintAnalysis {
+
+    private static final long ANALYSIS_MILLIS = 60_000;
+    private static final double DOLL_SCORE = 100.0;
+    private static final String IDLE_TEXT = "No analysis";
+
+    private final AlphaBetaEngine engine;
+    private final ExecutorService executor;
+    private final JPanel panel;
+    private final JLabel moveLabel;
+    private final JLabel scoreLabel;
+    private final JLabel depthLabel;
+    private SwingWorker<SearchResult, SearchResult> worker;
+    private AtomicBoolean workerStop;
+    private BreakThroughBoardGUI analysedBoard;
+    private long analysedHash;
+    private int analysedPlies;
+
+    /**
+     * Public constructor initializes the analysis searching with the given engine, which must not be used for anything else.
+     * @param engine
+     */
+    public HintAnalysis(AlphaBetaEngine engine) {
+        this.engine = engine;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hint analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+        panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        panel.setBorder(BorderFactory.createTitledBorder("Hint"));
+        moveLabel = new JLabel(IDLE_TEXT);
+        scoreLabel = new JLabel(" ");
+        depthLabel = new JLabel(" ");
+        panel.add(moveLabel);
+        panel.add(scoreLabel);
+        panel.add(depthLabel);
+    }
+
+    public JPanel getPanel() {
+        return panel;
+    }
+
+    /**
+     * Analyses the current position of the given board; a search of the same position that is running is kept.
+     * @param boardGUI
+     */
+    public void analyse(BreakThroughBoardGUI boardGUI) {
+        Board board = boardGUI.getBoard();
+        BitBoard position = new BitBoard(board.getPosition());
+        if (worker != null && analysedBoard == boardGUI && analysedHash == position.getHash() && analysedPlies == board.getPlies()) {
+            return;
+        }
+        stop();
+        analysedBoard = boardGUI;
+        analysedHash = position.getHash();
+        analysedPlies = board.getPlies();
+        moveLabel.setText("Thinking...");
+        AtomicBoolean stop = new AtomicBoolean();
+        workerStop = stop;
+        worker = new SwingWorker<SearchResult, SearchResult>() {
+            @Override
+            protected SearchResult doInBackground() {
+                return engine.findMove(position, ANALYSIS_MILLIS, stop, result -> {
+                    if (!isCancelled()) {
+                        publish(result);
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<SearchResult> results) {
+                if (!isCancelled() && worker == this) {
+                    show(results.get(results.size() - 1), position);
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || worker != this) {
+                    return;
+                }
+                try {
+                    show(get(), position);
+                    depthLabel.setText(depthLabel.getText() + ", finished");
+                } catch (InterruptedException | ExecutionException ex) {
+                    moveLabel.setText("Analysis failed: " + ex.getMessage());
+                }
+            }
+        };
+        executor.execute(worker);
+    }
+
+    /**
+     * Stops the running search, if there is one, and removes its hint from the panel and the board.
+     */
+    public void stop() {
+        if (worker != null) {
+            workerStop.set(true);
+            worker.cancel(false);
+            worker = null;
+        }
+        if (analysedBoard != null) {
+            analysedBoard.setHint(Move.NONE);
+            analysedBoard = null;
+        }
+        moveLabel.setText(IDLE_TEXT);
+        scoreLabel.setText(" ");
+        depthLabel.setText(" ");
+    }
+
+    /**
+     * Shows the given result of the search of the given position.
+     * @param result
+     * @param position
+     */
+    private void show(SearchResult result, BitBoard position) {
+        int move = result.getMove();
+        analysedBoard.setHint(move);
+        if (move == Move.NONE) {
+            moveLabel.setText("No move");
+            return;
+        }
+        int columns = position.getColumns();
+        int from = Move.from(move);
+        Direction direction = Move.direction(move, columns, position.firstTurn());
+        moveLabel.setText("Doll at row " + (from / columns + 1) + ", column " + (from % columns + 1) + " " + direction.getSymbol());
+        scoreLabel.setText(describeScore(result.getScore(), position.firstTurn()));
+        depthLabel.setText("Depth " + result.getDepth() + ", " + result.getNodesPerSecond() + " nodes/s");
+    }
+
+    /**
+     * Describes a score as the number of plies to a forced win or as an advantage in dolls.
+     * @param score score from the point of view of the player whose turn it is.
+     * @param firstTurn
+     * @return the description.
+     */
+    private static String describeScore(int score, boolean firstTurn) {
+        String player = firstTurn ? "O" : "X";
+        String opponent = firstTurn ? "X" : "O";
+        if (AlphaBetaEngine.isDecisive(score)) {
+            int plies = AlphaBetaEngine.WIN - Math.abs(score);
+            return (score > 0 ? player : opponent) + " wins in " + plies + (plies == 1 ? " ply" : " plies");
+        }
+        return String.format("%+.2f dolls for %s", score / DOLL_SCORE, player);
+    }
+}
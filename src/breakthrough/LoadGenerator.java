@@ -0,0 +1,275 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Client of the GameServer playing random games on many sessions at once and measuring the moves per second
+ * and the latency of a move from sending the request to reading the response.
+ * Every session keeps its own BitBoard of the game to choose legal moves and has one request on the way at a time.
+ * @author artur
+ */
+public class LoadGenerator {
+
+    private static final long SEED = 7;
+    private static final int BUFFER_BYTES = 256;
+
+    private final int port;
+    private final String size;
+    private final int[] sessionCounts;
+    private final long millis;
+
+    /**
+     * Public constructor initializes the load of the given numbers of sessions.
+     * @param port port of the server on localhost, or 0 to start a server in this process.
+     * @param size board size of the games, n or columns x rows.
+     * @param sessionCounts numbers of concurrent sessions, one measurement each.
+     * @param millis duration of every measurement.
+     */
+    public LoadGenerator(int port, String size, int[] sessionCounts, long millis) {
+        this.port = port;
+        this.size = size;
+        this.sessionCounts = sessionCounts;
+        this.millis = millis;
+    }
+
+    /**
+     * Creates the load from command line options: --port, --size, --sessions (comma separated) and --seconds.
+     * @param args
+     * @return the configured load.
+     * @throws IllegalArgumentException for an unknown option or an option without a value.
+     */
+    public static LoadGenerator fromArguments(String[] args) {
+        int port = 0;
+        String size = "8";
+        int[] sessionCounts = {1, 10, 100, 1000};
+        double seconds = 3;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of option: " + args[i]);
+            }
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--size":
+                    size = args[i + 1];
+                    break;
+                case "--sessions":
+                    sessionCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--seconds":
+                    seconds = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return new LoadGenerator(port, size, sessionCounts, (long) (seconds * 1000));
+    }
+
+    /**
+     * Runs the measurement of every number of sessions and prints a line for each.
+     * @param out
+     * @throws IOException
+     */
+    public void run(PrintStream out) throws IOException {
+        GameServer server = null;
+        int serverPort = port;
+        if (serverPort == 0) {
+            server = new GameServer(0);
+            server.start();
+            serverPort = server.getPort();
+        }
+        try {
+            out.printf("%s games on localhost:%d%s, %d ms per step%n", size, serverPort, server != null ? " (in process)" : "", millis);
+            out.printf("%9s %12s %12s %10s %10s %10s%n", "sessions", "moves", "moves/s", "p50 us", "p99 us", "errors");
+            for (int sessions : sessionCounts) {
+                measure(serverPort, sessions, out);
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Plays on the given number of sessions for the duration of a step.
+     * @param serverPort
+     * @param sessions
+     * @param out
+     * @throws IOException
+     */
+    private void measure(int serverPort, int sessions, PrintStream out) throws IOException {
+        int[] dimensions = BreakThrough.parseSize(size);
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Client> clients = new ArrayList<>();
+        long[] latencies = new long[1 << 16];
+        int samples = 0;
+        long errors = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < sessions; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), serverPort));
+                channel.socket().setTcpNoDelay(true);
+                channel.configureBlocking(false);
+                Client client = new Client(channel, new BitBoard(dimensions[0], dimensions[1]));
+                channel.register(selector, SelectionKey.OP_READ, client);
+                clients.add(client);
+            }
+            for (Client client : clients) {
+                client.newGame();
+            }
+            long start = System.nanoTime();
+            long deadline = start + millis * 1_000_000;
+            while (System.nanoTime() < deadline) {
+                selector.select(10);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    Client client = (Client) keys.next().attachment();
+                    keys.remove();
+                    String line;
+                    while ((line = client.readLine()) != null) {
+                        if (client.pendingMove == Move.NONE) {
+                            client.nextMove(random);
+                            continue;
+                        }
+                        long now = System.nanoTime();
+                        if (samples == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+                        }
+                        latencies[samples++] = now - client.sentAt;
+                        if (line.startsWith("OK")) {
+                            client.position.makeMove(client.pendingMove);
+                            client.nextMove(random);
+                        } else {
+                            errors++;
+                            client.newGame();
+                        }
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies, 0, samples);
+            out.printf("%9d %12d %12.0f %10.1f %10.1f %10d%n", sessions, samples, samples * 1e9 / elapsed,
+                    percentile(latencies, samples, 0.5) / 1e3, percentile(latencies, samples, 0.99) / 1e3, errors);
+        } finally {
+            for (Client client : clients) {
+                client.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a percentile of sorted samples.
+     * @param sorted
+     * @param count
+     * @param fraction
+     * @return the sample, 0 if there are none.
+     */
+    private static long percentile(long[] sorted, int count, double fraction) {
+        return count == 0 ? 0 : sorted[Math.min(count - 1, (int) Math.ceil(fraction * count) - 1)];
+    }
+
+    /**
+     * One session of the load with its copy of the game.
+     */
+    private final class Client {
+
+        private final SocketChannel channel;
+        private final BitBoard position;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        private final int[] moves;
+        private int pendingMove = Move.NONE;
+        private long sentAt;
+
+        /**
+         * Public constructor initializes the client of the given connection.
+         * @param channel
+         * @param position
+         */
+        public Client(SocketChannel channel, BitBoard position) {
+            this.channel = channel;
+            this.position = position;
+            moves = new int[position.getMaxMoves()];
+        }
+
+        /**
+         * Starts a new game on the session.
+         * @throws IOException
+         */
+        public void newGame() throws IOException {
+            position.reset();
+            pendingMove = Move.NONE;
+            send("NEW " + size);
+        }
+
+        /**
+         * Sends a random legal move, or starts a new game if the game is over.
+         * @param random
+         * @throws IOException
+         */
+        public void nextMove(SplittableRandom random) throws IOException {
+            int count = position.getWinner() == Player.NONE ? position.generateMoves(moves) : 0;
+            if (count == 0) {
+                newGame();
+                return;
+            }
+            pendingMove = moves[random.nextInt(count)];
+            int from = Move.from(pendingMove);
+            int columns = position.getColumns();
+            Direction direction = Move.direction(pendingMove, columns, position.firstTurn());
+            sentAt = System.nanoTime();
+            send("MOVE " + from / columns + " " + from % columns + " " + direction);
+        }
+
+        /**
+         * Takes the next complete line that has arrived.
+         * @return the line, or null if no complete line has arrived.
+         * @throws IOException
+         */
+        public String readLine() throws IOException {
+            for (int i = 0; i < in.position(); i++) {
+                if (in.get(i) == '\n') {
+                    String line = new String(in.array(), 0, i, StandardCharsets.US_ASCII);
+                    in.flip();
+                    in.position(i + 1);
+                    in.compact();
+                    return line;
+                }
+            }
+            if (channel.read(in) <= 0) {
+                return null;
+            }
+            return readLine();
+        }
+
+        /**
+         * Writes a request line.
+         * @param line
+         * @throws IOException
+         */
+        private void send(String line) throws IOException {
+            ByteBuffer request = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII));
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Computer player running Monte Carlo Tree Search with the UCT selection rule and random playouts.
+ * The nodes of the tree live in primitive arrays allocated once per thread and reused by every search,
+ * and the playouts run on a BitBoard copy, so a search does not allocate per iteration.
+ * With several threads the search is root-parallel: every thread grows its own tree and the visits of the root moves are summed.
+ * The score of the result is the winning rate of the chosen move in per mille, and its nodes are the playouts.
+ * @author artur
+ */
+public class MctsEngine implements Engine {
+
+    private static final int DEFAULT_CAPACITY = 1 << 20;
+    private static final double EXPLORATION = 0.7;
+    private static final int TIME_CHECK_MASK = 63;
+
+    private final int threads;
+    private final int capacity;
+    private final ExecutorService helpers;
+    private final Tree[] trees;
+    private volatile AtomicBoolean stopped = new AtomicBoolean(true);
+
+    /**
+     * Public constructor initializes a single-threaded engine.
+     */
+    public MctsEngine() {
+        this(1, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Public constructor initializes the engine with the given number of threads and tree nodes per thread.
+     * @param threads
+     * @param capacity
+     */
+    public MctsEngine(int threads, int capacity) {
+        this.threads = Math.max(1, threads);
+        this.capacity = Math.max(2, capacity);
+        trees = new Tree[this.threads];
+        if (this.threads > 1) {
+            helpers = Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "mcts helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Grows the trees until the budget runs out and plays the root move visited most often.
+     * @param position
+     * @param budgetMillis
+     * @param stop flag of this search; once it is set, the search returns as soon as possible.
+     * @return the most visited move.
+     */
+    @Override
+    public SearchResult findMove(BitBoard position, long budgetMillis, AtomicBoolean stop) {
+        long start = System.nanoTime();
+        stopped = stop;
+        long deadline = budgetMillis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + budgetMillis * 1_000_000;
+        if (position.getWinner() != Player.NONE) {
+            return new SearchResult(Move.NONE, 0, 0, 0, System.nanoTime() - start);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            if (trees[i] == null || trees[i].root.getRows() != position.getRows() || trees[i].root.getColumns() != position.getColumns()) {
+                trees[i] = new Tree(position, i);
+            }
+            trees[i].reset(position);
+        }
+        for (int i = 1; i < threads; i++) {
+            Tree tree = trees[i];
+            futures.add(helpers.submit(() -> tree.search(deadline, stop)));
+        }
+        trees[0].search(deadline, stop);
+        stop.set(true);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+
+        Tree main = trees[0];
+        long playouts = 0;
+        int depth = 0;
+        for (Tree tree : trees) {
+            playouts += tree.playouts;
+            depth = Math.max(depth, tree.maxDepth);
+        }
+        int bestMove = Move.NONE;
+        long bestVisits = -1;
+        double bestWins = 0;
+        for (int child = main.firstChild[0]; child < main.firstChild[0] + main.childCount[0]; child++) {
+            long visits = 0;
+            double wins = 0;
+            for (Tree tree : trees) {
+                int node = tree.findChild(main.move[child]);
+                if (node >= 0) {
+                    visits += tree.visits[node];
+                    wins += tree.wins[node];
+                }
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                bestWins = wins;
+                bestMove = main.move[child];
+            }
+        }
+        int score = bestVisits <= 0 ? 500 : (int) Math.round(1000 * bestWins / bestVisits);
+        long elapsed = System.nanoTime() - start;
+        Metrics.playoutsFinished(playouts, elapsed);
+        return new SearchResult(bestMove, score, depth, playouts, elapsed);
+    }
+
+    @Override
+    public void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Search tree of one thread; node 0 is the root and the children of a node are stored next to each other.
+     */
+    private final class Tree {
+
+        private final BitBoard root;
+        private final BitBoard position;
+        private final int[] move;
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final int[] visits;
+        private final float[] wins;
+        private final int[] path;
+        private final int[] moves;
+        private long random;
+        private int nodeCount;
+        private long playouts;
+        private int maxDepth;
+
+        /**
+         * Public constructor allocates the node pool and the buffers for positions of the given size.
+         * @param position
+         * @param index number of the thread, used to seed its random generator.
+         */
+        public Tree(BitBoard position, int index) {
+            root = new BitBoard(position);
+            this.position = new BitBoard(position);
+            move = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new int[capacity];
+            visits = new int[capacity];
+            wins = new float[capacity];
+            path = new int[AlphaBetaEngine.MAX_PLY];
+            moves = new int[position.getMaxMoves()];
+            random = System.nanoTime() ^ (0x9E3779B97F4A7C15L * (index + 1));
+        }
+
+        /**
+         * Empties the tree, sets the root to the given position and expands it, so that a search stopped before
+         * its first playout, e.g. by a budget of 0, still has the legal moves of the root to choose from.
+         * @param position
+         */
+        public void reset(BitBoard position) {
+            root.copyFrom(position);
+            nodeCount = 1;
+            move[0] = Move.NONE;
+            childCount[0] = 0;
+            visits[0] = 0;
+            wins[0] = 0;
+            playouts = 0;
+            maxDepth = 0;
+            this.position.copyFrom(root);
+            expand(0);
+        }
+
+        /**
+         * Runs selection, expansion, playout and backpropagation until the deadline or a stop request.
+         * @param deadline
+         * @param stop flag of the search shared by all trees.
+         */
+        public void search(long deadline, AtomicBoolean stop) {
+            boolean rootFirst = root.firstTurn();
+            while (!stop.get()) {
+                if ((playouts & TIME_CHECK_MASK) == 0 && System.nanoTime() >= deadline) {
+                    stop.set(true);
+                    break;
+                }
+                position.copyFrom(root);
+                int node = 0;
+                int depth = 0;
+                path[0] = 0;
+                while (childCount[node] > 0 && depth < path.length - 1) {
+                    node = select(node);
+                    position.makeMove(move[node]);
+                    path[++depth] = node;
+                }
+                if (position.getWinner() == Player.NONE && depth < path.length - 1 && visits[node] > 0 && expand(node)) {
+                    node = firstChild[node] + nextInt(childCount[node]);
+                    position.makeMove(move[node]);
+                    path[++depth] = node;
+                }
+                maxDepth = Math.max(maxDepth, depth);
+                boolean firstWins = playout();
+                playouts++;
+                for (int i = depth; i >= 0; i--) {
+                    int visited = path[i];
+                    visits[visited]++;
+                    boolean moverFirst = (i & 1) == 1 ? rootFirst : !rootFirst;
+                    if (moverFirst == firstWins) {
+                        wins[visited]++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Picks the child with the highest upper confidence bound; unvisited children come first.
+         * @param node
+         * @return index of the selected child.
+         */
+        private int select(int node) {
+            double logVisits = Math.log(visits[node]);
+            int best = firstChild[node];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                if (visits[child] == 0) {
+                    return child;
+                }
+                double value = wins[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds a child for every legal move of the current position, if the pool has room for them.
+         * @param node
+         * @return true if children were added, otherwise, false.
+         */
+        private boolean expand(int node) {
+            int count = position.generateMoves(moves);
+            if (count == 0 || nodeCount + count > capacity) {
+                return false;
+            }
+            firstChild[node] = nodeCount;
+            childCount[node] = count;
+            for (int i = 0; i < count; i++) {
+                int child = nodeCount++;
+                move[child] = moves[i];
+                childCount[child] = 0;
+                visits[child] = 0;
+                wins[child] = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Plays random moves until the game is decided; a move reaching the opponent's edge is always taken.
+         * A player without a legal move loses.
+         * @return true if the FIRST player wins, otherwise, false.
+         */
+        private boolean playout() {
+            while (position.getWinner() == Player.NONE) {
+                int count = position.generateMoves(moves);
+                if (count == 0) {
+                    return !position.firstTurn();
+                }
+                int chosen = moves[nextInt(count)];
+                boolean firstTurn = position.firstTurn();
+                for (int i = 0; i < count; i++) {
+                    if (position.isGoal(Move.to(moves[i]), firstTurn)) {
+                        chosen = moves[i];
+                        break;
+                    }
+                }
+                position.makeMove(chosen);
+            }
+            return position.getWinner() == Player.FIRST;
+        }
+
+        /**
+         * Finds the child of the root playing the given move.
+         * @param rootMove
+         * @return index of the child, or -1 if the root has no such child.
+         */
+        public int findChild(int rootMove) {
+            for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+                if (move[child] == rootMove) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Draws a random number with a xorshift generator.
+         * @param bound
+         * @return random number from 0 to bound - 1.
+         */
+        private int nextInt(int bound) {
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            return (int) ((random >>> 33) * bound >>> 31);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters of the game and the engines, switched on by the system property breakthrough.metrics=true.
+ * ENABLED is a constant, so when the metrics are off every recording call is compiled away by the JIT.
+ * The hot loops do not record anything: the engines count nodes, table hits and playouts in their own fields
+ * and add them here once per search, together with the think time of the search.
+ * The counters are published through JMX and can be printed as text or JSON.
+ * @author artur
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("breakthrough.metrics");
+    public static final String OBJECT_NAME = "breakthrough:type=Metrics";
+
+    private static final LongAdder MOVES_APPLIED = new LongAdder();
+    private static final LongAdder[] ILLEGAL_MOVES = new LongAdder[MoveStatus.values().length];
+    private static final LongAdder SEARCHES = new LongAdder();
+    private static final LongAdder SEARCH_NODES = new LongAdder();
+    private static final LongAdder SEARCH_NANOS = new LongAdder();
+    private static final LongAdder TABLE_PROBES = new LongAdder();
+    private static final LongAdder TABLE_HITS = new LongAdder();
+    private static final LongAdder PLAYOUTS = new LongAdder();
+    private static final LongAdder PLAYOUT_NANOS = new LongAdder();
+    private static final Histogram THINK_TIME = new Histogram();
+
+    static {
+        for (int i = 0; i < ILLEGAL_MOVES.length; i++) {
+            ILLEGAL_MOVES[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                System.err.println("The metrics could not be published through JMX: " + ex.getMessage());
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Counts a move applied to a game.
+     */
+    public static void moveApplied() {
+        if (ENABLED) {
+            MOVES_APPLIED.increment();
+        }
+    }
+
+    /**
+     * Counts a rejected move by its status.
+     * @param status
+     */
+    public static void illegalMove(MoveStatus status) {
+        if (ENABLED) {
+            ILLEGAL_MOVES[status.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records a finished alpha-beta search.
+     * @param nodes
+     * @param tableProbes
+     * @param tableHits
+     * @param elapsedNanos think time of the search.
+     */
+    public static void searchFinished(long nodes, long tableProbes, long tableHits, long elapsedNanos) {
+        if (ENABLED) {
+            SEARCHES.increment();
+            SEARCH_NODES.add(nodes);
+            SEARCH_NANOS.add(elapsedNanos);
+            TABLE_PROBES.add(tableProbes);
+            TABLE_HITS.add(tableHits);
+            THINK_TIME.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Records a finished Monte Carlo search.
+     * @param playouts
+     * @param elapsedNanos think time of the search.
+     */
+    public static void playoutsFinished(long playouts, long elapsedNanos) {
+        if (ENABLED) {
+            SEARCHES.increment();
+            PLAYOUTS.add(playouts);
+            PLAYOUT_NANOS.add(elapsedNanos);
+            THINK_TIME.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Resets every counter.
+     */
+    public static void reset() {
+        MOVES_APPLIED.reset();
+        for (LongAdder count : ILLEGAL_MOVES) {
+            count.reset();
+        }
+        SEARCHES.reset();
+        SEARCH_NODES.reset();
+        SEARCH_NANOS.reset();
+        TABLE_PROBES.reset();
+        TABLE_HITS.reset();
+        PLAYOUTS.reset();
+        PLAYOUT_NANOS.reset();
+        THINK_TIME.reset();
+    }
+
+    /**
+     * Formats the current counters; the rates are per second of thinking of the respective engine.
+     * @param json true for one JSON object, false for one line of text.
+     * @return the snapshot.
+     */
+    public static String snapshot(boolean json) {
+        Map<String, Long> illegal = illegalMoves();
+        long nodes = SEARCH_NODES.sum();
+        long probes = TABLE_PROBES.sum();
+        long playouts = PLAYOUTS.sum();
+        double nodesPerSecond = perSecond(nodes, SEARCH_NANOS.sum());
+        double hitRate = probes == 0 ? 0 : (double) TABLE_HITS.sum() / probes;
+        double playoutsPerSecond = perSecond(playouts, PLAYOUT_NANOS.sum());
+        if (!json) {
+            return String.format("moves %d, illegal %s, searches %d, nodes %d (%.0f/s), table hits %.1f%%, playouts %d (%.0f/s), think time p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    MOVES_APPLIED.sum(), illegal, SEARCHES.sum(), nodes, nodesPerSecond, 100 * hitRate, playouts, playoutsPerSecond,
+                    THINK_TIME.percentileMillis(0.5), THINK_TIME.percentileMillis(0.99), THINK_TIME.maxMillis());
+        }
+        StringBuilder reasons = new StringBuilder();
+        for (Map.Entry<String, Long> entry : illegal.entrySet()) {
+            reasons.append(reasons.length() == 0 ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+        }
+        return String.format(Locale.ROOT, "{\"movesApplied\":%d,\"illegalMoves\":{%s},\"searches\":%d,\"searchNodes\":%d,\"nodesPerSecond\":%.0f,"
+                + "\"tableProbes\":%d,\"tableHitRate\":%.4f,\"playouts\":%d,\"playoutsPerSecond\":%.0f,"
+                + "\"thinkTimeP50Millis\":%.3f,\"thinkTimeP99Millis\":%.3f,\"thinkTimeMaxMillis\":%.3f}",
+                MOVES_APPLIED.sum(), reasons, SEARCHES.sum(), nodes, nodesPerSecond, probes, hitRate, playouts, playoutsPerSecond,
+                THINK_TIME.percentileMillis(0.5), THINK_TIME.percentileMillis(0.99), THINK_TIME.maxMillis());
+    }
+
+    /**
+     * Prints a snapshot to the given stream every period on a daemon thread.
+     * @param out
+     * @param periodMillis
+     * @param json
+     * @return the scheduler, to be shut down when the reports are no longer wanted.
+     */
+    public static ScheduledExecutorService startReporter(PrintStream out, long periodMillis, boolean json) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.println(snapshot(json)), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return reporter;
+    }
+
+    /**
+     * Copies the rejected moves by status, leaving out the statuses that did not occur.
+     * @return counts by the name of the status.
+     */
+    private static Map<String, Long> illegalMoves() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (MoveStatus status : MoveStatus.values()) {
+            long count = ILLEGAL_MOVES[status.ordinal()].sum();
+            if (count > 0) {
+                counts.put(status.name(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Divides a count by a time.
+     * @param count
+     * @param nanos
+     * @return count per second, 0 for no time.
+     */
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    /**
+     * Latency histogram with four buckets per power of two nanoseconds; a percentile is reported as the upper end of its bucket,
+     * which is at most a quarter above the true value.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int BUCKETS = 64 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private volatile long max;
+
+        /**
+         * Counts a duration.
+         * @param nanos
+         */
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(1, nanos)));
+            total.increment();
+            if (nanos > max) {
+                synchronized (this) {
+                    max = Math.max(max, nanos);
+                }
+            }
+        }
+
+        /**
+         * Finds the bucket of a duration: the power of two and the next two bits below it.
+         * @param nanos at least 1.
+         * @return the bucket.
+         */
+        private static int bucket(long nanos) {
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = exponent < SUB_BUCKET_BITS ? 0 : (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+            return exponent << SUB_BUCKET_BITS | sub;
+        }
+
+        /**
+         * Gets the longest duration of a bucket.
+         * @param bucket
+         * @return nanoseconds.
+         */
+        private static long upperEnd(int bucket) {
+            int exponent = bucket >>> SUB_BUCKET_BITS;
+            if (exponent < SUB_BUCKET_BITS) {
+                return (2L << exponent) - 1;
+            }
+            long next = (long) ((1 << SUB_BUCKET_BITS) + (bucket & ((1 << SUB_BUCKET_BITS) - 1)) + 1) << (exponent - SUB_BUCKET_BITS);
+            return next <= 0 ? Long.MAX_VALUE : next - 1;
+        }
+
+        /**
+         * Estimates a percentile.
+         * @param fraction from 0 to 1, e.g. 0.99.
+         * @return the upper end of the bucket of the percentile in milliseconds, 0 if nothing was recorded.
+         */
+        double percentileMillis(double fraction) {
+            long count = total.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(max, upperEnd(bucket)) / 1e6;
+                }
+            }
+            return max / 1e6;
+        }
+
+        double maxMillis() {
+            return max / 1e6;
+        }
+
+        synchronized void reset() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts.set(bucket, 0);
+            }
+            total.reset();
+            max = 0;
+        }
+    }
+
+    /**
+     * JMX view of the counters.
+     */
+    private static final class Bean implements MetricsMXBean {
+
+        @Override
+        public long getMovesApplied() {
+            return MOVES_APPLIED.sum();
+        }
+
+        @Override
+        public Map<String, Long> getIllegalMoves() {
+            return illegalMoves();
+        }
+
+        @Override
+        public long getSearches() {
+            return SEARCHES.sum();
+        }
+
+        @Override
+        public long getSearchNodes() {
+            return SEARCH_NODES.sum();
+        }
+
+        @Override
+        public long getTableProbes() {
+            return TABLE_PROBES.sum();
+        }
+
+        @Override
+        public long getTableHits() {
+            return TABLE_HITS.sum();
+        }
+
+        @Override
+        public long getPlayouts() {
+            return PLAYOUTS.sum();
+        }
+
+        @Override
+        public double getThinkTimeP50Millis() {
+            return THINK_TIME.percentileMillis(0.5);
+        }
+
+        @Override
+        public double getThinkTimeP99Millis() {
+            return THINK_TIME.percentileMillis(0.99);
+        }
+
+        @Override
+        public double getThinkTimeMaxMillis() {
+            return THINK_TIME.maxMillis();
+        }
+
+        @Override
+        public String getSnapshot() {
+            return snapshot(false);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.Map;
+
+/**
+ * Counters of the game and the engines published through JMX as breakthrough:type=Metrics.
+ * @author artur
+ */
+public interface MetricsMXBean {
+
+    long getMovesApplied();
+
+    Map<String, Long> getIllegalMoves();
+
+    long getSearches();
+
+    long getSearchNodes();
+
+    long getTableProbes();
+
+    long getTableHits();
+
+    long getPlayouts();
+
+    double getThinkTimeP50Millis();
+
+    double getThinkTimeP99Millis();
+
+    double getThinkTimeMaxMillis();
+
+    String getSnapshot();
+}
@@ -0,0 +1,53 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+/**
+ * Encodes a move as a primitive int: the square it starts from in the upper half, the square it goes to in the lower half.
+ * @author artur
+ */
+public final class Move {
+
+    public static final int NONE = -1;
+
+    private Move() {
+    }
+
+    /**
+     * Encodes the move between the given squares.
+     * @param from
+     * @param to
+     * @return the encoded move.
+     */
+    public static int encode(int from, int to) {
+        return (from << 16) | to;
+    }
+
+    public static int from(int move) {
+        return move >>> 16;
+    }
+
+    public static int to(int move) {
+        return move & 0xFFFF;
+    }
+
+    /**
+     * Converts an encoded move to its direction as seen on the screen.
+     * @param move
+     * @param columns
+     * @param firstTurn true if the move is made by the first player.
+     * @return the direction.
+     */
+    public static Direction direction(int move, int columns, boolean firstTurn) {
+        int shift = to(move) - from(move) - (firstTurn ? columns : -columns);
+        if (shift < 0) {
+            return Direction.LEFT;
+        }
+        if (shift > 0) {
+            return Direction.RIGHT;
+        }
+        return firstTurn ? Direction.DOWN : Direction.UP;
+    }
+}
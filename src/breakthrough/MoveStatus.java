@@ -0,0 +1,33 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+/**
+ * Result of checking a move on the Board; only a dialog turns it into a message.
+ * @author artur
+ */
+public enum MoveStatus {
+    OK, WALL, OWN_PIECE, FORWARD_BLOCKED, WRONG_DIRECTION;
+
+    /**
+     * Gets the message shown to the player for a move in the given direction.
+     * @param direction
+     * @return the message, or null for OK.
+     */
+    public String getMessage(Direction direction) {
+        switch (this) {
+            case WALL:
+                return direction == Direction.RIGHT ? "There is a wall on the right!" : "There is a wall on the left!";
+            case OWN_PIECE:
+                return direction == Direction.RIGHT ? "You cannot go onto your doll!" : "You cannot go onto your dolls!";
+            case FORWARD_BLOCKED:
+                return "You cannot move forward onto your opponent's doll! Only forward diagonally!";
+            case WRONG_DIRECTION:
+                return "You can only move towards your opponent!";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Learned static evaluation of one board size: a network with one hidden layer over piece-square features,
+ * trained on the results of recorded games to predict whether the FIRST player wins.
+ * The input is one feature per player and square plus one for the turn; the hidden units are clipped to [0, 1].
+ * All weights are in one flat float array: a row of hidden weights per input feature, the hidden biases,
+ * the output weights and the output bias.
+ * A move changes at most three features, so the hidden layer is kept up to date by an Accumulator that adds and
+ * subtracts weight rows, and all moves of a position can be scored in one call.
+ * The inner loops run over contiguous rows of the float array, the output sums four independent partial sums,
+ * so the JIT can keep several additions in flight.
+ * @author artur
+ */
+public final class NetworkEvaluator {
+
+    static final int MAGIC = 0x42544E4E;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    public static final int DEFAULT_HIDDEN = 16;
+    private static final float SCORE_SCALE = 100;
+    private static final int MAX_SCORE = AlphaBetaEngine.WIN / 10;
+    private static final float LEARNING_RATE = 0.01f;
+    private static final double HOLDOUT_FRACTION = 0.1;
+    private static final float INITIAL_WEIGHT = 0.1f;
+    private static final float INITIAL_HIDDEN_BIAS = 0.5f;
+
+    private final int rows;
+    private final int columns;
+    private final int squares;
+    private final int hidden;
+    private final float[] weights;
+    private final int turnRow;
+    private final int zeroRow;
+    private final int hiddenBias;
+    private final int outputWeights;
+    private final int outputBias;
+
+    /**
+     * Private constructor initializes the evaluator over the given weights.
+     * @param rows
+     * @param columns
+     * @param hidden number of hidden units.
+     * @param weights flat weights, see weightCount.
+     */
+    private NetworkEvaluator(int rows, int columns, int hidden, float[] weights) {
+        this.rows = rows;
+        this.columns = columns;
+        this.squares = rows * columns;
+        this.hidden = hidden;
+        this.weights = weights;
+        turnRow = 2 * squares * hidden;
+        zeroRow = turnRow + hidden;
+        hiddenBias = zeroRow + hidden;
+        outputWeights = hiddenBias + hidden;
+        outputBias = outputWeights + hidden;
+    }
+
+    /**
+     * Gets the number of weights of a network: the rows of the 2 * squares doll features, the turn feature and a row of zeros
+     * standing for no feature, then the hidden biases, the output weights and the output bias.
+     * @param squares
+     * @param hidden
+     * @return weights.
+     */
+    private static int weightCount(int squares, int hidden) {
+        return (2 * squares + 2) * hidden + 2 * hidden + 1;
+    }
+
+    /**
+     * Creates an untrained network with small random weights.
+     * @param rows
+     * @param columns
+     * @param hidden number of hidden units.
+     * @param seed
+     * @return the evaluator.
+     * @throws IllegalArgumentException if the size is not supported by BitBoard.
+     */
+    public static NetworkEvaluator random(int rows, int columns, int hidden, long seed) {
+        BitBoard.checkSize(rows, columns);
+        int squares = rows * columns;
+        float[] weights = new float[weightCount(squares, hidden)];
+        Random random = new Random(seed);
+        for (int i = 0; i < (2 * squares + 1) * hidden; i++) {
+            weights[i] = (2 * random.nextFloat() - 1) * INITIAL_WEIGHT;
+        }
+        int hiddenBias = (2 * squares + 2) * hidden;
+        Arrays.fill(weights, hiddenBias, hiddenBias + hidden, INITIAL_HIDDEN_BIAS);
+        for (int i = hiddenBias + hidden; i < hiddenBias + 2 * hidden; i++) {
+            weights[i] = (2 * random.nextFloat() - 1) / hidden;
+        }
+        return new NetworkEvaluator(rows, columns, hidden, weights);
+    }
+
+    /**
+     * Trains a network on the finished games of the given size of a game record file by stochastic gradient descent
+     * on the logistic loss of the winner; every position of a game is a sample, and the last games are held out to report the accuracy.
+     * @param records game record file.
+     * @param rows
+     * @param columns
+     * @param hidden number of hidden units.
+     * @param epochs passes over the training positions.
+     * @param seed seed of the initial weights and the order of the samples.
+     * @param log receives the loss and the accuracy after every epoch, or null.
+     * @return the trained evaluator.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file has too few finished games of the size.
+     */
+    public static NetworkEvaluator train(Path records, int rows, int columns, int hidden, int epochs, long seed, PrintStream log) throws IOException {
+        NetworkEvaluator network = random(rows, columns, hidden, seed);
+        BitBoard position = new BitBoard(rows, columns);
+        int stride = 2 * position.getWords() + 1;
+        long[] samples = new long[1 << 16];
+        int count = 0;
+        int[] gameStarts = new int[64];
+        int games = 0;
+        try (GameRecordReader reader = new GameRecordReader(records)) {
+            while (reader.next()) {
+                if (reader.getRows() != rows || reader.getColumns() != columns || reader.getWinner() == Player.NONE) {
+                    continue;
+                }
+                if (games == gameStarts.length) {
+                    gameStarts = Arrays.copyOf(gameStarts, 2 * games);
+                }
+                gameStarts[games++] = count;
+                long firstWins = reader.getWinner() == Player.FIRST ? 2 : 0;
+                position.reset();
+                for (int ply = 0; ply <= reader.getPlies(); ply++) {
+                    if ((count + 1) * stride > samples.length) {
+                        samples = Arrays.copyOf(samples, 2 * samples.length);
+                    }
+                    int offset = count++ * stride;
+                    for (int word = 0; word < position.getWords(); word++) {
+                        samples[offset + 2 * word] = position.getWord(true, word);
+                        samples[offset + 2 * word + 1] = position.getWord(false, word);
+                    }
+                    samples[offset + stride - 1] = firstWins | (position.firstTurn() ? 1 : 0);
+                    if (ply < reader.getPlies()) {
+                        position.makeMove(reader.getMove(ply));
+                    }
+                }
+            }
+        }
+        int holdoutGames = (int) (games * HOLDOUT_FRACTION);
+        if (games - holdoutGames < 1) {
+            throw new IllegalArgumentException("No finished " + columns + "x" + rows + " games to train on in " + records);
+        }
+        int trainingCount = holdoutGames == 0 ? count : gameStarts[games - holdoutGames];
+        int[] order = new int[trainingCount];
+        for (int i = 0; i < trainingCount; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        float[] preActivation = new float[hidden];
+        float[] gradient = new float[hidden];
+        int[] features = new int[network.squares + 1];
+        long start = System.nanoTime();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = trainingCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            float rate = LEARNING_RATE / (1 + epoch);
+            double loss = 0;
+            for (int i = 0; i < trainingCount; i++) {
+                loss += network.step(samples, order[i] * stride, stride, features, preActivation, gradient, rate);
+            }
+            double holdoutLoss = 0;
+            int correct = 0;
+            for (int sample = trainingCount; sample < count; sample++) {
+                float logit = network.forward(samples, sample * stride, stride, features, preActivation);
+                boolean firstWins = (samples[sample * stride + stride - 1] & 2) != 0;
+                holdoutLoss += logLoss(logit, firstWins);
+                correct += (logit > 0) == firstWins ? 1 : 0;
+            }
+            if (log != null) {
+                int holdout = count - trainingCount;
+                log.printf("epoch %d: loss %.4f, held-out loss %.4f, accuracy %.1f%% of %d positions, %.1f s%n", epoch + 1,
+                        loss / trainingCount, holdout == 0 ? 0.0 : holdoutLoss / holdout, holdout == 0 ? 0.0 : 100.0 * correct / holdout,
+                        holdout, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Computes the logistic loss of a prediction.
+     * @param logit
+     * @param firstWins
+     * @return the loss.
+     */
+    private static double logLoss(float logit, boolean firstWins) {
+        double margin = firstWins ? logit : -logit;
+        return margin > 0 ? Math.log1p(Math.exp(-margin)) : -margin + Math.log1p(Math.exp(margin));
+    }
+
+    /**
+     * Collects the active features of a stored sample and sums their rows and the hidden biases.
+     * @param samples
+     * @param offset start of the sample.
+     * @param stride longs per sample.
+     * @param features receives the first rows of the active features.
+     * @param preActivation receives the hidden units before clipping.
+     * @return the number of active features.
+     */
+    private int activate(long[] samples, int offset, int stride, int[] features, float[] preActivation) {
+        int count = 0;
+        for (int word = 0; 2 * word < stride - 1; word++) {
+            long dolls = samples[offset + 2 * word];
+            while (dolls != 0) {
+                features[count++] = featureRow(true, (word << 6) + Long.numberOfTrailingZeros(dolls));
+                dolls &= dolls - 1;
+            }
+            dolls = samples[offset + 2 * word + 1];
+            while (dolls != 0) {
+                features[count++] = featureRow(false, (word << 6) + Long.numberOfTrailingZeros(dolls));
+                dolls &= dolls - 1;
+            }
+        }
+        if ((samples[offset + stride - 1] & 1) != 0) {
+            features[count++] = turnRow;
+        }
+        System.arraycopy(weights, hiddenBias, preActivation, 0, hidden);
+        for (int i = 0; i < count; i++) {
+            addRow(preActivation, 0, features[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Predicts a stored sample.
+     * @param samples
+     * @param offset start of the sample.
+     * @param stride longs per sample.
+     * @param features scratch for the active features.
+     * @param preActivation scratch for the hidden units.
+     * @return the logit of a win of the FIRST player.
+     */
+    private float forward(long[] samples, int offset, int stride, int[] features, float[] preActivation) {
+        activate(samples, offset, stride, features, preActivation);
+        return output(preActivation, 0);
+    }
+
+    /**
+     * Makes one gradient step on a stored sample.
+     * @param samples
+     * @param offset start of the sample.
+     * @param stride longs per sample.
+     * @param features scratch for the active features.
+     * @param preActivation scratch for the hidden units.
+     * @param gradient scratch for the gradient of the hidden units.
+     * @param rate learning rate.
+     * @return the loss of the sample before the step.
+     */
+    private double step(long[] samples, int offset, int stride, int[] features, float[] preActivation, float[] gradient, float rate) {
+        int count = activate(samples, offset, stride, features, preActivation);
+        float logit = output(preActivation, 0);
+        boolean firstWins = (samples[offset + stride - 1] & 2) != 0;
+        float error = (float) (1 / (1 + Math.exp(-logit))) - (firstWins ? 1 : 0);
+        for (int h = 0; h < hidden; h++) {
+            float z = preActivation[h];
+            gradient[h] = z > 0 && z < 1 ? rate * error * weights[outputWeights + h] : 0;
+            weights[outputWeights + h] -= rate * error * clip(z);
+        }
+        weights[outputBias] -= rate * error;
+        for (int h = 0; h < hidden; h++) {
+            weights[hiddenBias + h] -= gradient[h];
+        }
+        for (int i = 0; i < count; i++) {
+            int row = features[i];
+            for (int h = 0; h < hidden; h++) {
+                weights[row + h] -= gradient[h];
+            }
+        }
+        return logLoss(logit, firstWins);
+    }
+
+    /**
+     * Opens a network file.
+     * @param path
+     * @return the evaluator.
+     * @throws IOException if the file cannot be read or is not a network file.
+     */
+    public static NetworkEvaluator open(Path path) throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (file.limit() < HEADER_BYTES) {
+            throw new IOException("Not a network file: " + path);
+        }
+        if (file.getInt(0) != MAGIC || file.getShort(4) != VERSION) {
+            throw new IOException("Not a network file of version " + VERSION + ": " + path);
+        }
+        int rows = file.getShort(6);
+        int columns = file.getShort(8);
+        int hidden = file.getShort(10);
+        if (rows < BitBoard.MIN_ROWS || columns < BitBoard.MIN_COLUMNS || hidden < 1
+                || file.limit() != HEADER_BYTES + 4L * weightCount(rows * columns, hidden)) {
+            throw new IOException("Damaged network file: " + path);
+        }
+        float[] weights = new float[weightCount(rows * columns, hidden)];
+        file.position(HEADER_BYTES).asFloatBuffer().get(weights);
+        return new NetworkEvaluator(rows, columns, hidden, weights);
+    }
+
+    /**
+     * Writes the network to the given file, replacing its content.
+     * @param path
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * weights.length);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) rows).putShort((short) columns).putShort((short) hidden);
+        buffer.asFloatBuffer().put(weights);
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    /**
+     * Checks whether the network evaluates positions of the size of the given board.
+     * @param position
+     * @return true if the sizes are equal, otherwise, false.
+     */
+    public boolean fits(BitBoard position) {
+        return position.getRows() == rows && position.getColumns() == columns;
+    }
+
+    /**
+     * Evaluates a position from scratch; a search should keep an Accumulator instead.
+     * @param position board of the size of the network.
+     * @return score from the point of view of the player whose turn it is, where 100 is a logit of 1.
+     */
+    public int evaluate(BitBoard position) {
+        Accumulator accumulator = newAccumulator(0, 0);
+        accumulator.reset(position);
+        return accumulator.score(position.firstTurn());
+    }
+
+    /**
+     * Creates the incremental state of a search; it belongs to one thread.
+     * @param maxPly number of moves that can be pushed.
+     * @param maxMoves number of moves scoreMoves can score at once, e.g. BitBoard.getMaxMoves().
+     * @return the accumulator, to be reset to a position before use.
+     */
+    public Accumulator newAccumulator(int maxPly, int maxMoves) {
+        return new Accumulator(maxPly, maxMoves);
+    }
+
+    /**
+     * Gets the first weight of the row of a doll feature.
+     * @param firstPlayer
+     * @param square
+     * @return index into the weights.
+     */
+    private int featureRow(boolean firstPlayer, int square) {
+        return (firstPlayer ? square : squares + square) * hidden;
+    }
+
+    /**
+     * Adds a weight row to the hidden units.
+     * @param target
+     * @param offset first hidden unit in the target.
+     * @param row first weight of the row.
+     */
+    private void addRow(float[] target, int offset, int row) {
+        for (int h = 0; h < hidden; h++) {
+            target[offset + h] += weights[row + h];
+        }
+    }
+
+    /**
+     * Computes the hidden units after a move: the doll leaves one row and enters another, the beaten doll, if any,
+     * leaves its row, and the turn feature flips; a move without capture subtracts the row of zeros, so there is no branch.
+     * @param source hidden units before the move.
+     * @param sourceOffset
+     * @param target receives the hidden units after the move.
+     * @param targetOffset
+     * @param added row of the moved doll on its new square.
+     * @param removed row of the moved doll on its old square.
+     * @param captured row of the beaten doll, or the row of zeros.
+     * @param turnSign +1 if the turn feature becomes active, -1 if it becomes inactive.
+     */
+    private void applyMove(float[] source, int sourceOffset, float[] target, int targetOffset, int added, int removed, int captured, float turnSign) {
+        float[] w = weights;
+        int turn = turnRow;
+        for (int h = 0; h < hidden; h++) {
+            target[targetOffset + h] = source[sourceOffset + h] + w[added + h] - w[removed + h] - w[captured + h] + turnSign * w[turn + h];
+        }
+    }
+
+    /**
+     * Computes the output of the network from the hidden units before clipping.
+     * @param preActivation
+     * @param offset first hidden unit.
+     * @return the logit of a win of the FIRST player.
+     */
+    private float output(float[] preActivation, int offset) {
+        float[] w = weights;
+        int outputs = outputWeights;
+        float sum0 = w[outputBias];
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int h = 0;
+        for (; h + 3 < hidden; h += 4) {
+            sum0 += clip(preActivation[offset + h]) * w[outputs + h];
+            sum1 += clip(preActivation[offset + h + 1]) * w[outputs + h + 1];
+            sum2 += clip(preActivation[offset + h + 2]) * w[outputs + h + 2];
+            sum3 += clip(preActivation[offset + h + 3]) * w[outputs + h + 3];
+        }
+        for (; h < hidden; h++) {
+            sum0 += clip(preActivation[offset + h]) * w[outputs + h];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Clips a hidden unit to [0, 1]; comparisons are faster than Math.min and Math.max, which have to handle NaN and -0.
+     * @param z
+     * @return the activation.
+     */
+    private static float clip(float z) {
+        return z < 0 ? 0 : z > 1 ? 1 : z;
+    }
+
+    /**
+     * Converts a logit of a win of the FIRST player into a search score.
+     * @param logit
+     * @param firstTurn
+     * @return score from the point of view of the player whose turn it is.
+     */
+    private static int toScore(float logit, boolean firstTurn) {
+        int score = Math.max(-MAX_SCORE, Math.min(MAX_SCORE, Math.round(logit * SCORE_SCALE)));
+        return firstTurn ? score : -score;
+    }
+
+    /**
+     * Hidden units of the positions along the current line of a search, one row per ply.
+     */
+    public final class Accumulator {
+
+        private final float[] stack;
+        private final float[] children;
+        private int top;
+
+        /**
+         * Public constructor initializes the stack of the given depth.
+         * @param maxPly
+         * @param maxMoves
+         */
+        public Accumulator(int maxPly, int maxMoves) {
+            stack = new float[(maxPly + 1) * hidden];
+            children = new float[maxMoves * hidden];
+        }
+
+        /**
+         * Computes the hidden units of the given position from scratch and empties the stack.
+         * @param position board of the size of the network.
+         */
+        public void reset(BitBoard position) {
+            if (!fits(position)) {
+                throw new IllegalArgumentException("The network is for " + columns + "x" + rows + " boards!");
+            }
+            top = 0;
+            System.arraycopy(weights, hiddenBias, stack, 0, hidden);
+            for (int word = 0; word < position.getWords(); word++) {
+                long dolls = position.getWord(true, word);
+                while (dolls != 0) {
+                    addRow(stack, 0, featureRow(true, (word << 6) + Long.numberOfTrailingZeros(dolls)));
+                    dolls &= dolls - 1;
+                }
+                dolls = position.getWord(false, word);
+                while (dolls != 0) {
+                    addRow(stack, 0, featureRow(false, (word << 6) + Long.numberOfTrailingZeros(dolls)));
+                    dolls &= dolls - 1;
+                }
+            }
+            if (position.firstTurn()) {
+                addRow(stack, 0, turnRow);
+            }
+        }
+
+        /**
+         * Updates the hidden units for a move; call it before the move is made on the position.
+         * @param position the position before the move.
+         * @param move legal move of the player whose turn it is.
+         */
+        public void push(BitBoard position, int move) {
+            boolean firstTurn = position.firstTurn();
+            int to = Move.to(move);
+            applyMove(stack, top, stack, top + hidden, featureRow(firstTurn, to), featureRow(firstTurn, Move.from(move)),
+                    position.isFree(to) ? zeroRow : featureRow(!firstTurn, to), firstTurn ? -1 : 1);
+            top += hidden;
+        }
+
+        /**
+         * Returns to the hidden units before the last pushed move.
+         */
+        public void pop() {
+            top -= hidden;
+        }
+
+        /**
+         * Scores the position of the top of the stack.
+         * @param firstTurn whose turn it is in the position.
+         * @return score from the point of view of the player whose turn it is.
+         */
+        public int score(boolean firstTurn) {
+            return toScore(output(stack, top), firstTurn);
+        }
+
+        /**
+         * Scores the positions after each of the given moves in one batch: the hidden units of all children are computed
+         * first, then the outputs, so both loops run over contiguous rows.
+         * @param position the position of the top of the stack.
+         * @param moves legal moves of the player whose turn it is.
+         * @param count number of moves, at most the maxMoves of the accumulator.
+         * @param scores receives the score after each move from the point of view of the player making it.
+         */
+        public void scoreMoves(BitBoard position, int[] moves, int count, int[] scores) {
+            boolean firstTurn = position.firstTurn();
+            for (int i = 0; i < count; i++) {
+                int to = Move.to(moves[i]);
+                applyMove(stack, top, children, i * hidden, featureRow(firstTurn, to), featureRow(firstTurn, Move.from(moves[i])),
+                        position.isFree(to) ? zeroRow : featureRow(!firstTurn, to), firstTurn ? -1 : 1);
+            }
+            for (int i = 0; i < count; i++) {
+                scores[i] = toScore(output(children, i * hidden), firstTurn);
+            }
+        }
+    }
+}
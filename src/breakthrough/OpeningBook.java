@@ -0,0 +1,192 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Opening book of one board size: the move to play in positions of the first plies, keyed by the Zobrist hash of the position.
+ * The book is built by self-play: every position of the opening is searched to a fixed depth once, and the games leave
+ * the searched line at random to cover the replies an opponent may choose.
+ * The file holds the sorted hashes followed by the moves in the same order; it is memory-mapped and looked up by binary search.
+ * @author artur
+ */
+public class OpeningBook {
+
+    static final int MAGIC = 0x4254424B;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    private static final double LEAVE_LINE_PROBABILITY = 0.5;
+
+    private final int rows;
+    private final int columns;
+    private final int entries;
+    private final LongBuffer keys;
+    private final IntBuffer moves;
+
+    /**
+     * Private constructor initializes the book over the given sorted keys and their moves.
+     * @param rows
+     * @param columns
+     * @param keys
+     * @param moves
+     */
+    private OpeningBook(int rows, int columns, LongBuffer keys, IntBuffer moves) {
+        this.rows = rows;
+        this.columns = columns;
+        this.entries = keys.limit();
+        this.keys = keys;
+        this.moves = moves;
+    }
+
+    /**
+     * Builds the book of the given board size by self-play of the alpha-beta engine.
+     * @param rows
+     * @param columns
+     * @param games number of self-play games.
+     * @param plies number of plies of every game covered by the book.
+     * @param depth search depth of every book position.
+     * @param seed seed of the random choices, so a book can be built again.
+     * @param log receives the progress, or null.
+     * @return the book, held in memory until it is written.
+     */
+    public static OpeningBook build(int rows, int columns, int games, int plies, int depth, long seed, PrintStream log) {
+        AlphaBetaEngine engine = new AlphaBetaEngine();
+        engine.setMaxDepth(depth);
+        Random random = new Random(seed);
+        Map<Long, Integer> book = new HashMap<>();
+        BitBoard position = new BitBoard(rows, columns);
+        int[] legal = new int[position.getMaxMoves()];
+        long start = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            position.reset();
+            for (int ply = 0; ply < plies && position.getWinner() == Player.NONE; ply++) {
+                Integer move = book.get(position.getHash());
+                if (move == null) {
+                    move = engine.findMove(position, Long.MAX_VALUE).getMove();
+                    if (move == Move.NONE) {
+                        break;
+                    }
+                    book.put(position.getHash(), move);
+                }
+                if (random.nextDouble() < LEAVE_LINE_PROBABILITY) {
+                    move = legal[random.nextInt(position.generateMoves(legal))];
+                }
+                position.makeMove(move);
+            }
+            if (log != null && (game + 1) % Math.max(1, games / 10) == 0) {
+                log.printf("%d games, %d positions, %.1f s%n", game + 1, book.size(), (System.nanoTime() - start) / 1e9);
+            }
+        }
+        long[] sortedKeys = book.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[] sortedMoves = Arrays.stream(sortedKeys).mapToInt(key -> book.get(key)).toArray();
+        return new OpeningBook(rows, columns, LongBuffer.wrap(sortedKeys), IntBuffer.wrap(sortedMoves));
+    }
+
+    /**
+     * Maps an opening book file.
+     * @param path
+     * @return the book.
+     * @throws IOException if the file cannot be read or is not an opening book file.
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not an opening book file: " + path);
+            }
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.getInt(0) != MAGIC || file.getShort(4) != VERSION) {
+                throw new IOException("Not an opening book file of version " + VERSION + ": " + path);
+            }
+            int rows = file.getShort(6);
+            int columns = file.getShort(8);
+            int entries = file.getInt(12);
+            if (entries < 0 || channel.size() != HEADER_BYTES + 12L * entries) {
+                throw new IOException("Damaged opening book file: " + path);
+            }
+            LongBuffer keys = file.position(HEADER_BYTES).slice().asLongBuffer();
+            keys.limit(entries);
+            IntBuffer moves = file.position(HEADER_BYTES + 8 * entries).slice().asIntBuffer();
+            moves.limit(entries);
+            return new OpeningBook(rows, columns, keys, moves);
+        }
+    }
+
+    /**
+     * Writes the book to the given file, replacing its content.
+     * @param path
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 12 * entries);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) rows).putShort((short) columns).putShort((short) 0).putInt(entries);
+        for (int i = 0; i < entries; i++) {
+            buffer.putLong(keys.get(i));
+        }
+        for (int i = 0; i < entries; i++) {
+            buffer.putInt(moves.get(i));
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of positions of the book.
+     * @return positions.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Looks up the book move of the given position.
+     * @param position
+     * @return the encoded move, or Move.NONE if the position is not in the book or is of another size.
+     */
+    public int lookup(BitBoard position) {
+        if (position.getRows() != rows || position.getColumns() != columns) {
+            return Move.NONE;
+        }
+        long key = position.getHash();
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys.get(middle);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                int move = moves.get(middle);
+                return position.isLegal(move) ? move : Move.NONE;
+            }
+        }
+        return Move.NONE;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth (perft) to check the move generation and to measure its speed.
+ * A finished game has no moves, so a won position is a leaf only at the depth where it is reached.
+ * The bitboard counts are bulk counted: a node one ply above the leaves adds its number of legal moves without making them.
+ * Subtrees of positions reached again by another order of moves are counted once and kept in a table keyed by the Zobrist hash
+ * and the depth. On square boards the tree is also walked on the ReferenceBoard, whose legal moves are found by trying
+ * every move on a copy, and the moves of every node are compared with those of the bitboard.
+ * @author artur
+ */
+public class Perft {
+
+    private static final String[] DIRECTIONS = {Board.UP, Board.DOWN, Board.LEFT, Board.RIGHT};
+    private static final int ENTRY_BYTES = 16;
+    private static final int DEPTH_BITS = 8;
+    private static final int DEFAULT_TABLE_MEGABYTES = 64;
+    private static final long SEED = 11;
+
+    private final long[] keys;
+    private final long[] counts;
+    private final int mask;
+
+    /**
+     * Public constructor initializes the counter with a table of the given size for the counted subtrees.
+     * @param megabytes
+     */
+    public Perft(int megabytes) {
+        int entries = Integer.highestOneBit(Math.max(1, (int) Math.min(1 << 30, (long) megabytes * 1024 * 1024 / ENTRY_BYTES)));
+        keys = new long[entries];
+        counts = new long[entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * Counts the leaves of the given depth below the position without a table.
+     * @param position left unchanged.
+     * @param depth
+     * @return number of leaves.
+     */
+    public static long count(BitBoard position, int depth) {
+        if (position.getWinner() != Player.NONE) {
+            return depth == 0 ? 1 : 0;
+        }
+        if (depth == 0) {
+            return 1;
+        }
+        int[] moves = new int[position.getMaxMoves()];
+        int count = position.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            leaves += count(position, depth - 1);
+            position.unmakeMove();
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts the leaves of the given depth below the position, looking up and storing the counts of subtrees of depth 2 and more.
+     * The table is kept between calls, so it must only be shared by positions of one board size.
+     * @param position left unchanged.
+     * @param depth
+     * @return number of leaves.
+     */
+    public long countHashed(BitBoard position, int depth) {
+        int[][] moves = new int[depth + 1][position.getMaxMoves()];
+        return countHashed(position, depth, moves);
+    }
+
+    /**
+     * Counts the leaves of the given depth with the given move buffers, one per remaining depth.
+     * @param position
+     * @param depth
+     * @param moves
+     * @return number of leaves.
+     */
+    private long countHashed(BitBoard position, int depth, int[][] moves) {
+        if (position.getWinner() != Player.NONE) {
+            return depth == 0 ? 1 : 0;
+        }
+        if (depth == 0) {
+            return 1;
+        }
+        int[] list = moves[depth];
+        int count = position.generateMoves(list);
+        if (depth == 1) {
+            return count;
+        }
+        long key = position.getHash();
+        int slot = (int) key & mask;
+        long entry = counts[slot];
+        if (keys[slot] == key && (entry & ((1 << DEPTH_BITS) - 1)) == depth) {
+            return entry >>> DEPTH_BITS;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(list[i]);
+            leaves += countHashed(position, depth - 1, moves);
+            position.unmakeMove();
+        }
+        keys[slot] = key;
+        counts[slot] = leaves << DEPTH_BITS | depth;
+        return leaves;
+    }
+
+    /**
+     * Empties the table, e.g. before counting on another board size.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Counts the leaves of the given depth on the reference board and checks at every node that the bitboard has the same legal moves.
+     * @param board reference board, left unchanged.
+     * @param position bitboard in the same position, left unchanged.
+     * @param depth
+     * @return number of leaves.
+     * @throws IllegalStateException with the position and both move lists if the legal moves differ.
+     */
+    public static long countReference(ReferenceBoard board, BitBoard position, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int size = board.getSize();
+        int[] expected = new int[position.getMaxMoves()];
+        String[] directions = new String[expected.length];
+        int count = 0;
+        if (board.getGameResult() == Player.NONE) {
+            Player player = board.firstTurn() ? Player.FIRST : Player.SECOND;
+            int forward = board.firstTurn() ? size : -size;
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    if (board.getOwner(row, column) != player) {
+                        continue;
+                    }
+                    for (String direction : DIRECTIONS) {
+                        if (tryMove(new ReferenceBoard(board), direction, row, column)) {
+                            int from = row * size + column;
+                            int step = direction.equals(Board.LEFT) ? -1 : direction.equals(Board.RIGHT) ? 1 : 0;
+                            directions[count] = direction;
+                            expected[count++] = Move.encode(from, from + forward + step);
+                        }
+                    }
+                }
+            }
+        }
+        int[] actual = new int[position.getMaxMoves()];
+        int actualCount = position.getWinner() == Player.NONE ? position.generateMoves(actual) : 0;
+        int[] sortedExpected = Arrays.copyOf(expected, count);
+        int[] sortedActual = Arrays.copyOf(actual, actualCount);
+        Arrays.sort(sortedExpected);
+        Arrays.sort(sortedActual);
+        if (!Arrays.equals(sortedExpected, sortedActual)) {
+            throw new IllegalStateException("The moves differ in\n" + position + (position.firstTurn() ? "O" : "X") + " to move, reference "
+                    + describe(sortedExpected, size) + ", bitboard " + describe(sortedActual, size));
+        }
+        if (depth == 1) {
+            return count;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            ReferenceBoard child = new ReferenceBoard(board);
+            int from = Move.from(expected[i]);
+            tryMove(child, directions[i], from / size, from % size);
+            child.changeTurn();
+            position.makeMove(expected[i]);
+            leaves += countReference(child, position, depth - 1);
+            position.unmakeMove();
+        }
+        return leaves;
+    }
+
+    /**
+     * Tries a move on the reference board.
+     * @param board
+     * @param direction
+     * @param row
+     * @param column
+     * @return true if the move was made, otherwise, false.
+     */
+    private static boolean tryMove(ReferenceBoard board, String direction, int row, int column) {
+        try {
+            return board.makeMove(direction, row, column);
+        } catch (WrongDirectionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Counts every depth up to the given one from the starting position and from positions after random openings
+     * of each size and prints the counts, the speed of the plain and the hashed count and the time of the reference.
+     * @param sizes square board sizes.
+     * @param depth deepest count.
+     * @param referenceDepth deepest count walked on the reference board as well.
+     * @param openings number of positions after random openings besides the starting position.
+     * @param out
+     * @return true if every count agreed, otherwise, false.
+     */
+    public static boolean run(int[] sizes, int depth, int referenceDepth, int openings, PrintStream out) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Perft hashed = new Perft(DEFAULT_TABLE_MEGABYTES);
+        boolean agreed = true;
+        for (int size : sizes) {
+            hashed.clear();
+            for (int opening = 0; opening <= openings; opening++) {
+                ReferenceBoard board = new ReferenceBoard(size);
+                BitBoard position = new BitBoard(size, size);
+                int plies = opening == 0 ? 0 : 2 * size;
+                String line = playOpening(board, position, plies, random);
+                out.printf("%dx%d %s%n", size, size, line);
+                out.printf("%5s %16s %12s %12s %12s %12s %8s%n", "depth", "leaves", "plain ms", "Mleaves/s", "hashed ms", "reference ms", "check");
+                for (int d = 1; d <= depth; d++) {
+                    long start = System.nanoTime();
+                    long leaves = count(position, d);
+                    long plain = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    long hashedLeaves = hashed.countHashed(position, d);
+                    long hashedTime = System.nanoTime() - start;
+                    String referenceTime = "-";
+                    boolean ok = hashedLeaves == leaves;
+                    if (d <= referenceDepth) {
+                        start = System.nanoTime();
+                        try {
+                            ok &= countReference(board, position, d) == leaves;
+                        } catch (IllegalStateException ex) {
+                            out.println(ex.getMessage());
+                            ok = false;
+                        }
+                        referenceTime = String.format("%.1f", (System.nanoTime() - start) / 1e6);
+                    }
+                    agreed &= ok;
+                    out.printf("%5d %16d %12.1f %12.1f %12.1f %12s %8s%n", d, leaves, plain / 1e6, leaves * 1e3 / Math.max(1, plain),
+                            hashedTime / 1e6, referenceTime, ok ? "ok" : "MISMATCH");
+                }
+            }
+        }
+        return agreed;
+    }
+
+    /**
+     * Plays random moves on both boards, starting again if a game ends before the given number of plies.
+     * @param board
+     * @param position
+     * @param plies
+     * @param random
+     * @return the moves of the opening, or "start" for the starting position.
+     */
+    private static String playOpening(ReferenceBoard board, BitBoard position, int plies, SplittableRandom random) {
+        if (plies == 0) {
+            return "start";
+        }
+        int size = board.getSize();
+        int[] moves = new int[position.getMaxMoves()];
+        int[] line = new int[plies];
+        while (true) {
+            BitBoard trial = new BitBoard(size, size);
+            int ply = 0;
+            for (; ply < plies && trial.getWinner() == Player.NONE; ply++) {
+                line[ply] = moves[random.nextInt(trial.generateMoves(moves))];
+                trial.makeMove(line[ply]);
+            }
+            if (ply == plies && trial.getWinner() == Player.NONE) {
+                break;
+            }
+        }
+        for (int ply = 0; ply < plies; ply++) {
+            int from = Move.from(line[ply]);
+            tryMove(board, Move.direction(line[ply], size, board.firstTurn()).getSymbol(), from / size, from % size);
+            board.changeTurn();
+            position.makeMove(line[ply]);
+        }
+        return "after " + describe(line, size);
+    }
+
+    /**
+     * Writes the given moves as row,column-row,column separated by spaces.
+     * @param moves
+     * @param columns
+     * @return the moves.
+     */
+    private static String describe(int[] moves, int columns) {
+        StringBuilder text = new StringBuilder();
+        for (int move : moves) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            int from = Move.from(move);
+            int to = Move.to(move);
+            text.append(from / columns).append(',').append(from % columns).append('-').append(to / columns).append(',').append(to % columns);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of a position packed into primitive words: the occupancy masks of both players, the turn, the result and the hash.
+ * A board of at most 64 squares fits into two longs and needs no array, so a snapshot takes about 48 bytes instead of
+ * a Cell per square; larger boards keep the remaining words in one array.
+ * Snapshots of many games can be shared through a SnapshotPool, so a position reached again is stored once.
+ * @author artur
+ */
+public final class PositionSnapshot {
+
+    private final short rows;
+    private final short columns;
+    private final boolean firstTurn;
+    private final Player winner;
+    private final long hash;
+    private final long first;
+    private final long second;
+    private final long[] rest;
+
+    /**
+     * Private constructor initializes the snapshot of the given position; use SnapshotPool.intern or of.
+     * @param position
+     */
+    private PositionSnapshot(BitBoard position) {
+        rows = (short) position.getRows();
+        columns = (short) position.getColumns();
+        firstTurn = position.firstTurn();
+        winner = position.getWinner();
+        hash = position.getHash();
+        first = position.getWord(true, 0);
+        second = position.getWord(false, 0);
+        int words = position.getWords();
+        if (words == 1) {
+            rest = null;
+        } else {
+            rest = new long[2 * (words - 1)];
+            for (int word = 1; word < words; word++) {
+                rest[2 * word - 2] = position.getWord(true, word);
+                rest[2 * word - 1] = position.getWord(false, word);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the given position that is not shared with any other.
+     * @param position
+     * @return the snapshot.
+     */
+    public static PositionSnapshot of(BitBoard position) {
+        return new PositionSnapshot(position);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns Boolean value to define whose turn it is in the snapshot.
+     * @return true if it's the turn of the first player, otherwise, false.
+     */
+    public boolean firstTurn() {
+        return firstTurn;
+    }
+
+    public Player getWinner() {
+        return winner;
+    }
+
+    /**
+     * Gets the Zobrist key of the position, equal to BitBoard.getHash at the time of the snapshot.
+     * @return 64-bit hash of the dolls and the turn.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Sets the given board to the position of the snapshot without allocating; its undo stack is emptied.
+     * @param position board of the size of the snapshot.
+     */
+    public void restore(BitBoard position) {
+        if (position.getRows() != rows || position.getColumns() != columns) {
+            throw new IllegalArgumentException("The snapshot is " + columns + "x" + rows + ", the board "
+                    + position.getColumns() + "x" + position.getRows() + "!");
+        }
+        position.setWords(0, first, second);
+        for (int word = 1; word < position.getWords(); word++) {
+            position.setWords(word, rest[2 * word - 2], rest[2 * word - 1]);
+        }
+        position.restoreState(firstTurn, winner, hash);
+    }
+
+    /**
+     * Sets up a new board in the position of the snapshot.
+     * @return the board.
+     */
+    public BitBoard toBitBoard() {
+        BitBoard position = new BitBoard(rows, columns);
+        restore(position);
+        return position;
+    }
+
+    /**
+     * Checks whether the given board is in the position of the snapshot, without allocating.
+     * @param position
+     * @return true if the size, the dolls, the turn and the result are equal, otherwise, false.
+     */
+    public boolean matches(BitBoard position) {
+        if (position.getHash() != hash || position.getRows() != rows || position.getColumns() != columns
+                || position.firstTurn() != firstTurn || position.getWinner() != winner
+                || position.getWord(true, 0) != first || position.getWord(false, 0) != second) {
+            return false;
+        }
+        for (int word = 1; word < position.getWords(); word++) {
+            if (position.getWord(true, word) != rest[2 * word - 2] || position.getWord(false, word) != rest[2 * word - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PositionSnapshot)) {
+            return false;
+        }
+        PositionSnapshot other = (PositionSnapshot) obj;
+        return hash == other.hash && rows == other.rows && columns == other.columns && firstTurn == other.firstTurn
+                && winner == other.winner && first == other.first && second == other.second
+                && Arrays.equals(rest, other.rest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+}
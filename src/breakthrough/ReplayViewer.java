@@ -0,0 +1,124 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.KeyStroke;
+
+/**
+ * Window stepping forward and back through the moves of a game; the slider seeks to any move through the checkpoints of the game.
+ * @author artur
+ */
+public class ReplayViewer {
+
+    private final GameHistory game;
+    private final Board board;
+    private final JFrame frame;
+    private final JSlider slider;
+    private final JLabel moveLabel;
+
+    /**
+     * Public constructor opens the viewer at the start of the given game.
+     * @param game
+     * @param title
+     */
+    public ReplayViewer(GameHistory game, String title) {
+        this.game = game;
+        board = new Board(game.getRows(), game.getColumns());
+        BoardPanel boardPanel = new BoardPanel(board);
+        board.addBoardListener(new BoardListener() {
+            @Override
+            public void cellChanged(int row, int column) {
+                boardPanel.repaintCell(row, column);
+            }
+
+            @Override
+            public void boardReset() {
+                boardPanel.repaint();
+            }
+        });
+
+        frame = new JFrame(title);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.getContentPane().add(boardPanel, BorderLayout.CENTER);
+
+        slider = new JSlider(0, game.getPlies(), 0);
+        slider.addChangeListener(e -> {
+            showMove(slider.getValue());
+        });
+        moveLabel = new JLabel();
+
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        controlPanel.add(createButton("|<", () -> slider.setValue(0)));
+        controlPanel.add(createButton("<", () -> slider.setValue(slider.getValue() - 1)));
+        controlPanel.add(createButton(">", () -> slider.setValue(slider.getValue() + 1)));
+        controlPanel.add(createButton(">|", () -> slider.setValue(game.getPlies())));
+        controlPanel.add(slider);
+        controlPanel.add(moveLabel);
+        frame.getContentPane().add(controlPanel, BorderLayout.SOUTH);
+
+        bindKey(KeyEvent.VK_LEFT, "back", () -> slider.setValue(slider.getValue() - 1));
+        bindKey(KeyEvent.VK_RIGHT, "forward", () -> slider.setValue(slider.getValue() + 1));
+        bindKey(KeyEvent.VK_HOME, "start", () -> slider.setValue(0));
+        bindKey(KeyEvent.VK_END, "end", () -> slider.setValue(game.getPlies()));
+
+        showMove(0);
+        frame.pack();
+        frame.setLocationByPlatform(true);
+        frame.setVisible(true);
+    }
+
+    /**
+     * Shows the position after the given number of plies.
+     * @param ply
+     */
+    private void showMove(int ply) {
+        board.restore(game, ply);
+        String result = ply == game.getPlies() && game.getWinner() != Player.NONE
+                ? (game.getWinner() == Player.FIRST ? ", O wins" : ", X wins") : "";
+        moveLabel.setText("Move " + ply + " of " + game.getPlies() + result);
+    }
+
+    /**
+     * Creates a button running the given action.
+     * @param label
+     * @param action
+     * @return the button.
+     */
+    private static JButton createButton(String label, Runnable action) {
+        JButton button = new JButton(label);
+        button.addActionListener((ActionEvent e) -> {
+            action.run();
+        });
+        return button;
+    }
+
+    /**
+     * Runs the given action when the given key is pressed anywhere in the window.
+     * @param key
+     * @param name
+     * @param action
+     */
+    private void bindKey(int key, String name, Runnable action) {
+        JComponent content = (JComponent) frame.getContentPane();
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+        content.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+}
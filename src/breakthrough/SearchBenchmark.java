@@ -0,0 +1,77 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.PrintStream;
+
+/**
+ * Measures how the alpha-beta search scales with the number of threads: the time to reach a fixed depth and the nodes per second.
+ * @author artur
+ */
+public class SearchBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final int TABLE_MEGABYTES = 64;
+    private static final int WARM_UP_SEARCHES = 3;
+
+    private final int rows;
+    private final int columns;
+    private final int depth;
+    private final int repetitions;
+
+    /**
+     * Public constructor initializes the benchmark of the starting position of the given size.
+     * @param rows
+     * @param columns
+     * @param depth fixed depth every search has to complete.
+     * @param repetitions number of measured searches per thread count.
+     */
+    public SearchBenchmark(int rows, int columns, int depth, int repetitions) {
+        this.rows = rows;
+        this.columns = columns;
+        this.depth = depth;
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Warms up the JIT, then runs one untimed and the measured searches for every thread count.
+     * @param out
+     */
+    public void run(PrintStream out) {
+        for (int i = 0; i < WARM_UP_SEARCHES; i++) {
+            search(1);
+        }
+        out.printf("%dx%d, depth %d, %d searches per thread count%n", columns, rows, depth, repetitions);
+        out.printf("%8s %12s %14s %14s %10s%n", "threads", "time (ms)", "nodes", "nodes/s", "speedup");
+        double baseline = 0;
+        for (int threads : THREAD_COUNTS) {
+            search(threads);
+            long nanos = 0;
+            long nodes = 0;
+            for (int i = 0; i < repetitions; i++) {
+                SearchResult result = search(threads);
+                nanos += result.getElapsedNanos();
+                nodes += result.getNodes();
+            }
+            double millis = nanos / 1e6 / repetitions;
+            if (threads == 1) {
+                baseline = millis;
+            }
+            out.printf("%8d %12.1f %14d %14d %9.2fx%n", threads, millis, nodes / repetitions, (long) (nodes / (nanos / 1e9)), baseline / millis);
+        }
+    }
+
+    /**
+     * Searches the starting position to the fixed depth with a fresh transposition table; the engine and its threads are closed afterwards.
+     * @param threads
+     * @return the result of the search.
+     */
+    private SearchResult search(int threads) {
+        try (AlphaBetaEngine engine = new AlphaBetaEngine(new TranspositionTable(TABLE_MEGABYTES), threads)) {
+            engine.setMaxDepth(depth);
+            return engine.findMove(new BitBoard(rows, columns), Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+/**
+ * Outcome of one search of an engine: the chosen move and the statistics of the search.
+ * @author artur
+ */
+public final class SearchResult {
+
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    /**
+     * Public constructor initializes the result of a search.
+     * @param move encoded best move, or Move.NONE if there is no legal move.
+     * @param score score of the move from the point of view of the player whose turn it was.
+     * @param depth deepest completed iteration.
+     * @param nodes number of visited nodes.
+     * @param elapsedNanos wall-clock time of the search.
+     */
+    public SearchResult(int move, int score, int depth, long nodes, long elapsedNanos) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the search speed.
+     * @return visited nodes per second.
+     */
+    public long getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + ", score " + score + ", " + nodes + " nodes in " + elapsedNanos / 1_000_000 + " ms (" + getNodesPerSecond() + " nodes/s)";
+    }
+}
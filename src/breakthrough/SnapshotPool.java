@@ -0,0 +1,89 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.Arrays;
+
+/**
+ * Interns position snapshots by their Zobrist hash, so every distinct position is stored once however often it is reached.
+ * The snapshots are kept in one open-addressing array probed linearly from the hash; looking up a position that is
+ * already in the pool compares it word by word and allocates nothing. Not thread-safe.
+ * @author artur
+ */
+public class SnapshotPool {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private PositionSnapshot[] table;
+    private int size;
+
+    /**
+     * Public constructor initializes an empty pool.
+     */
+    public SnapshotPool() {
+        table = new PositionSnapshot[MIN_CAPACITY];
+    }
+
+    /**
+     * Gets the snapshot of the given position, taking a new one only if the position is not in the pool yet.
+     * @param position
+     * @return the shared snapshot equal to the position.
+     */
+    public PositionSnapshot intern(BitBoard position) {
+        int mask = table.length - 1;
+        int slot = (int) position.getHash() & mask;
+        PositionSnapshot snapshot;
+        while ((snapshot = table[slot]) != null) {
+            if (snapshot.matches(position)) {
+                return snapshot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        snapshot = PositionSnapshot.of(position);
+        table[slot] = snapshot;
+        if (++size > table.length / 2) {
+            grow();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the number of distinct positions in the pool.
+     * @return positions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every snapshot; the snapshots handed out stay valid.
+     */
+    public void clear() {
+        if (table.length > MIN_CAPACITY) {
+            table = new PositionSnapshot[MIN_CAPACITY];
+        } else {
+            Arrays.fill(table, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Doubles the table and moves every snapshot to its slot in the larger table.
+     */
+    private void grow() {
+        PositionSnapshot[] old = table;
+        table = new PositionSnapshot[2 * old.length];
+        int mask = table.length - 1;
+        for (PositionSnapshot snapshot : old) {
+            if (snapshot != null) {
+                int slot = (int) snapshot.getHash() & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = snapshot;
+            }
+        }
+    }
+}
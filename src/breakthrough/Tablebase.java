@@ -0,0 +1,463 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase: the exact result of every position of a small board with at most a given number of dolls.
+ * A position is indexed without gaps by the number of dolls of each player, the rank of the squares of the FIRST player
+ * among all sets of that many squares, the rank of the squares of the SECOND player among the remaining squares, and the turn.
+ * Every position takes one byte: 0 while unknown, otherwise 1 + (distance &lt;&lt; 1 | win), where the distance is the number of plies
+ * until the game ends with best play, the winner ending it as soon as possible and the loser as late as possible.
+ * The generator solves the positions by retrograde passes with the rules of BitBoard, which are the rules of Board.makeMove:
+ * pass n finds the positions won or lost in n plies. The file starts with a header and is memory-mapped for probing.
+ * @author artur
+ */
+public class Tablebase {
+
+    public static final int UNKNOWN = -1;
+    public static final int DEFAULT_PIECES = 4;
+
+    static final int MAGIC = 0x42545442;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    private static final int MAX_SQUARES = 64;
+    private static final int MAX_DISTANCE = 126;
+
+    private final int rows;
+    private final int columns;
+    private final int squares;
+    private final int maxPieces;
+    private final long[][] binomial;
+    private final long[][] groupStart;
+    private final long size;
+    private final ByteBuffer values;
+
+    /**
+     * Private constructor initializes the indexing of the given board over the given values.
+     * @param rows
+     * @param columns
+     * @param maxPieces
+     * @param values one byte per position, or null to allocate empty values for the generator.
+     */
+    private Tablebase(int rows, int columns, int maxPieces, ByteBuffer values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.squares = rows * columns;
+        this.maxPieces = maxPieces;
+        binomial = new long[squares + 1][maxPieces + 1];
+        for (int n = 0; n <= squares; n++) {
+            binomial[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, maxPieces); k++) {
+                binomial[n][k] = binomial[n - 1][k - 1] + (k < n ? binomial[n - 1][k] : 0);
+            }
+        }
+        groupStart = new long[maxPieces + 1][maxPieces + 1];
+        long offset = 0;
+        for (int pieces = 2; pieces <= maxPieces; pieces++) {
+            for (int firstDolls = 1; firstDolls < pieces; firstDolls++) {
+                groupStart[firstDolls][pieces - firstDolls] = offset;
+                offset += groupSize(firstDolls, pieces - firstDolls);
+            }
+        }
+        size = offset;
+        if (size > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException("The tablebase of " + maxPieces + " dolls does not fit in a file!");
+        }
+        this.values = values != null ? values : ByteBuffer.allocate((int) size);
+    }
+
+    /**
+     * Solves every position of the given board with at most the given number of dolls.
+     * @param rows
+     * @param columns
+     * @param maxPieces at least 2.
+     * @param log receives the progress, or null.
+     * @return the solved tablebase, held in memory until it is written.
+     */
+    public static Tablebase generate(int rows, int columns, int maxPieces, PrintStream log) {
+        if (rows * columns > MAX_SQUARES || maxPieces < 2) {
+            throw new IllegalArgumentException("Tablebases are made for boards of at most " + MAX_SQUARES + " squares and at least 2 dolls!");
+        }
+        Tablebase tablebase = new Tablebase(rows, columns, maxPieces, null);
+        for (int pieces = 2; pieces <= maxPieces; pieces++) {
+            long start = System.nanoTime();
+            int passes = tablebase.solve(pieces);
+            if (log != null) {
+                log.printf("%d dolls: %d positions, %d passes, %.1f s%n", pieces, tablebase.piecesSize(pieces), passes, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        return tablebase;
+    }
+
+    /**
+     * Maps a tablebase file for probing.
+     * @param path
+     * @return the tablebase.
+     * @throws IOException if the file cannot be read or is not a tablebase file.
+     */
+    public static Tablebase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a tablebase file: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION) {
+                throw new IOException("Not a tablebase file of version " + VERSION + ": " + path);
+            }
+            int rows = header.getShort(6);
+            int columns = header.getShort(8);
+            int maxPieces = header.getShort(10);
+            if (rows * columns > MAX_SQUARES || maxPieces < 2 || maxPieces > rows * columns) {
+                throw new IOException("Damaged tablebase file: " + path);
+            }
+            Tablebase tablebase = new Tablebase(rows, columns, maxPieces, ByteBuffer.allocate(0));
+            if (channel.size() != HEADER_BYTES + tablebase.size) {
+                throw new IOException("Damaged tablebase file: " + path);
+            }
+            return new Tablebase(rows, columns, maxPieces, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, tablebase.size));
+        }
+    }
+
+    /**
+     * Writes the tablebase to the given file, replacing its content.
+     * @param path
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) rows).putShort((short) columns).putShort((short) maxPieces).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = values.duplicate();
+            body.clear();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Gets the number of positions of the tablebase.
+     * @return positions of all numbers of dolls.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Checks whether a probe result is a win for the player whose turn it is.
+     * @param result a result other than UNKNOWN.
+     * @return true for a win, false for a loss.
+     */
+    public static boolean isWin(int result) {
+        return (result & 1) != 0;
+    }
+
+    /**
+     * Gets the number of plies until the game ends with best play.
+     * @param result a result other than UNKNOWN.
+     * @return the distance.
+     */
+    public static int getDistance(int result) {
+        return result >>> 1;
+    }
+
+    /**
+     * Looks the given position up; it takes no search and no allocation.
+     * @param position
+     * @return distance &lt;&lt; 1 | win for the player whose turn it is, or UNKNOWN if the position is not in the tablebase.
+     */
+    public int probe(BitBoard position) {
+        if (position.getDollCount(Player.FIRST) + position.getDollCount(Player.SECOND) > maxPieces
+                || position.getRows() != rows || position.getColumns() != columns) {
+            return UNKNOWN;
+        }
+        long index = index(position.getWord(true, 0), position.getWord(false, 0), position.firstTurn());
+        return index < 0 ? UNKNOWN : Byte.toUnsignedInt(values.get((int) index)) - 1;
+    }
+
+    /**
+     * Finds the move keeping the result of the given position: the fastest win, or the slowest loss.
+     * @param position the position, which is the same again afterwards.
+     * @return the encoded move, or Move.NONE if the position is not in the tablebase or has no legal move.
+     */
+    public int bestMove(BitBoard position) {
+        int result = probe(position);
+        if (result == UNKNOWN) {
+            return Move.NONE;
+        }
+        int[] moves = new int[position.getMaxMoves()];
+        int count = position.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            int reply = childResult(position);
+            position.unmakeMove();
+            if (reply != UNKNOWN && isWin(reply) != isWin(result) && getDistance(reply) == getDistance(result) - 1) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Gets the result of a position reached by a move of a position of the tablebase; a capture may leave the tablebase only by ending the game.
+     * @param position
+     * @return the result for the player whose turn it is.
+     */
+    private int childResult(BitBoard position) {
+        if (position.getWinner() != Player.NONE) {
+            return position.getWinner() == (position.firstTurn() ? Player.FIRST : Player.SECOND) ? 1 : 0;
+        }
+        return probe(position);
+    }
+
+    /**
+     * Solves the positions with the given number of dolls; the positions with fewer dolls are solved already.
+     * @param pieces
+     * @return the number of passes.
+     */
+    private int solve(int pieces) {
+        BitBoard position = new BitBoard(rows, columns);
+        int[] moves = new int[position.getMaxMoves()];
+        long start = groupStart[1][pieces - 1];
+        long end = start + piecesSize(pieces);
+        long unknown = end - start;
+        int pass = 0;
+        while (unknown > 0) {
+            if (pass > MAX_DISTANCE) {
+                throw new IllegalStateException("The positions of " + pieces + " dolls are longer than " + MAX_DISTANCE + " plies!");
+            }
+            for (long index = start; index < end; index++) {
+                if (values.get((int) index) != 0 || !setPosition(position, index)) {
+                    continue;
+                }
+                int result = pass == 0 ? terminalResult(position, moves) : passResult(position, moves, pass);
+                if (result != UNKNOWN) {
+                    values.put((int) index, (byte) (result + 1));
+                    unknown--;
+                }
+            }
+            pass++;
+        }
+        return pass;
+    }
+
+    /**
+     * Finds the result of a position that is decided without a move.
+     * @param position
+     * @param moves
+     * @return the result of distance 0, or UNKNOWN if the game goes on.
+     */
+    private static int terminalResult(BitBoard position, int[] moves) {
+        if (position.getWinner() != Player.NONE) {
+            return position.getWinner() == (position.firstTurn() ? Player.FIRST : Player.SECOND) ? 1 : 0;
+        }
+        return position.generateMoves(moves) == 0 ? 0 : UNKNOWN;
+    }
+
+    /**
+     * Finds the result of a position won or lost in exactly the given number of plies.
+     * @param position
+     * @param moves
+     * @param pass
+     * @return the result, or UNKNOWN if the position takes longer.
+     */
+    private int passResult(BitBoard position, int[] moves, int pass) {
+        int count = position.generateMoves(moves);
+        int fastestWin = Integer.MAX_VALUE;
+        int slowestLoss = -1;
+        boolean open = false;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            int reply = childResult(position);
+            position.unmakeMove();
+            if (reply == UNKNOWN) {
+                open = true;
+            } else if (!isWin(reply)) {
+                fastestWin = Math.min(fastestWin, getDistance(reply) + 1);
+            } else {
+                slowestLoss = Math.max(slowestLoss, getDistance(reply) + 1);
+            }
+        }
+        if (fastestWin == pass) {
+            return pass << 1 | 1;
+        }
+        if (fastestWin == Integer.MAX_VALUE && !open && slowestLoss == pass) {
+            return pass << 1;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Sets the given board to the position of the given index.
+     * @param position
+     * @param index
+     * @return false if the index is not a position, which does not happen for indexes of the tablebase.
+     */
+    private boolean setPosition(BitBoard position, long index) {
+        for (int pieces = 2; pieces <= maxPieces; pieces++) {
+            for (int firstDolls = 1; firstDolls < pieces; firstDolls++) {
+                int secondDolls = pieces - firstDolls;
+                long local = index - groupStart[firstDolls][secondDolls];
+                if (local < 0 || local >= groupSize(firstDolls, secondDolls)) {
+                    continue;
+                }
+                boolean firstTurn = (local & 1) == 0;
+                local >>>= 1;
+                long secondCombinations = binomial[squares - firstDolls][secondDolls];
+                long firstMask = unrank(local / secondCombinations, firstDolls, squares);
+                long secondMask = expand(unrank(local % secondCombinations, secondDolls, squares - firstDolls), firstMask);
+                position.setPosition(firstMask, secondMask, firstTurn);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of a position.
+     * @param firstMask
+     * @param secondMask
+     * @param firstTurn
+     * @return the index, or -1 if a player has no dolls or there are too many dolls.
+     */
+    private long index(long firstMask, long secondMask, boolean firstTurn) {
+        int firstDolls = Long.bitCount(firstMask);
+        int secondDolls = Long.bitCount(secondMask);
+        if (firstDolls == 0 || secondDolls == 0 || firstDolls + secondDolls > maxPieces) {
+            return -1;
+        }
+        long local = rank(firstMask) * binomial[squares - firstDolls][secondDolls] + rank(compress(secondMask, firstMask));
+        return groupStart[firstDolls][secondDolls] + (local << 1) + (firstTurn ? 0 : 1);
+    }
+
+    /**
+     * Ranks a set of squares among all sets of the same number of squares in the combinatorial number system.
+     * @param mask
+     * @return the rank.
+     */
+    private long rank(long mask) {
+        long rank = 0;
+        for (int k = 1; mask != 0; k++, mask &= mask - 1) {
+            rank += binomial[Long.numberOfTrailingZeros(mask)][k];
+        }
+        return rank;
+    }
+
+    /**
+     * Finds the set of the given number of squares with the given rank.
+     * @param rank
+     * @param dolls
+     * @param squares number of squares to choose from.
+     * @return the set of squares.
+     */
+    private long unrank(long rank, int dolls, int squares) {
+        long mask = 0;
+        int square = squares - 1;
+        for (int k = dolls; k > 0; k--) {
+            while (binomial[square][k] > rank) {
+                square--;
+            }
+            rank -= binomial[square][k];
+            mask |= 1L << square;
+            square--;
+        }
+        return mask;
+    }
+
+    /**
+     * Numbers the given squares among the squares that are not taken.
+     * @param mask
+     * @param taken
+     * @return the squares renumbered without the taken squares.
+     */
+    private static long compress(long mask, long taken) {
+        long compressed = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            int square = Long.numberOfTrailingZeros(mask);
+            compressed |= 1L << (square - Long.bitCount(taken & ((1L << square) - 1)));
+        }
+        return compressed;
+    }
+
+    /**
+     * Reverses compress.
+     * @param compressed
+     * @param taken
+     * @return the squares of the board.
+     */
+    private static long expand(long compressed, long taken) {
+        long mask = 0;
+        for (int square = 0; compressed != 0; square++) {
+            if ((taken >>> square & 1) == 0) {
+                if ((compressed & 1) != 0) {
+                    mask |= 1L << square;
+                }
+                compressed >>>= 1;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the number of positions with the given numbers of dolls, counting both turns.
+     * @param firstDolls
+     * @param secondDolls
+     * @return the positions.
+     */
+    private long groupSize(int firstDolls, int secondDolls) {
+        return 2 * binomial[squares][firstDolls] * binomial[squares - firstDolls][secondDolls];
+    }
+
+    /**
+     * Gets the number of positions with the given number of dolls in total.
+     * @param pieces
+     * @return the positions.
+     */
+    private long piecesSize(int pieces) {
+        long positions = 0;
+        for (int firstDolls = 1; firstDolls < pieces; firstDolls++) {
+            positions += groupSize(firstDolls, pieces - firstDolls);
+        }
+        return positions;
+    }
+
+    /**
+     * Counts the wins and losses of the player whose turn it is and the longest distance.
+     * @return wins, losses and the longest distance.
+     */
+    public long[] statistics() {
+        long[] statistics = new long[3];
+        for (int index = 0; index < size; index++) {
+            int result = Byte.toUnsignedInt(values.get(index)) - 1;
+            if (result != UNKNOWN) {
+                statistics[isWin(result) ? 0 : 1]++;
+                statistics[2] = Math.max(statistics[2], getDistance(result));
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Headless engine-versus-engine match played on all cores without a window.
+ * The engines swap sides every game; a game reaching the ply limit is a draw.
+ * @author artur
+ */
+public class Tournament {
+
+    private static final int TABLE_MEGABYTES = 8;
+    private static final double Z_95 = 1.96;
+
+    private final int rows;
+    private final int columns;
+    private final int games;
+    private final int threads;
+    private final int maxPlies;
+    private final Contestant first;
+    private final Contestant second;
+    private final Path recordPath;
+    private GameRecordWriter recorder;
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicInteger firstWins = new AtomicInteger();
+    private final AtomicInteger secondWins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+
+    /**
+     * Public constructor initializes the match between the given engines.
+     * @param rows
+     * @param columns
+     * @param games number of games.
+     * @param threads number of games played at the same time.
+     * @param maxPlies number of plies after which a game is a draw.
+     * @param firstSpec engine and time control of A, e.g. "ab:50", "abn:50" or "mcts:100".
+     * @param secondSpec engine and time control of B.
+     * @param recordPath game record file the games are appended to, or null.
+     * @param tablebase endgame tablebase of the alpha-beta engines, or null.
+     * @param book opening book of the alpha-beta engines, or null.
+     * @param evaluator network evaluation of the abn engines, or null.
+     */
+    public Tournament(int rows, int columns, int games, int threads, int maxPlies, String firstSpec, String secondSpec, Path recordPath,
+            Tablebase tablebase, OpeningBook book, NetworkEvaluator evaluator) {
+        this.rows = rows;
+        this.columns = columns;
+        this.games = games;
+        this.threads = Math.max(1, threads);
+        this.maxPlies = maxPlies;
+        this.first = new Contestant(firstSpec, tablebase, book, evaluator);
+        this.second = new Contestant(secondSpec, tablebase, book, evaluator);
+        this.recordPath = recordPath;
+    }
+
+    /**
+     * Creates the match from command line options: --size (n or columns x rows), --games, --threads, --max-plies, --a, --b, --record, --tablebase, --book and --evaluator.
+     * @param args
+     * @return the configured match.
+     * @throws IOException if the tablebase, the opening book or the network cannot be read.
+     * @throws IllegalArgumentException for an unknown option, an option without a value or fewer than one game.
+     */
+    public static Tournament fromArguments(String[] args) throws IOException {
+        int[] size = {8, 8};
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxPlies = 1000;
+        String firstSpec = "ab:50";
+        String secondSpec = "mcts:50";
+        Path recordPath = null;
+        Tablebase tablebase = null;
+        OpeningBook book = null;
+        NetworkEvaluator evaluator = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of option: " + args[i]);
+            }
+            switch (args[i]) {
+                case "--size":
+                    size = BreakThrough.parseSize(args[i + 1]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[i + 1]);
+                    if (games < 1) {
+                        throw new IllegalArgumentException("At least one game must be played: " + args[i + 1]);
+                    }
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--max-plies":
+                    maxPlies = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--a":
+                    firstSpec = args[i + 1];
+                    break;
+                case "--b":
+                    secondSpec = args[i + 1];
+                    break;
+                case "--record":
+                    recordPath = Paths.get(args[i + 1]);
+                    break;
+                case "--tablebase":
+                    tablebase = Tablebase.open(Paths.get(args[i + 1]));
+                    break;
+                case "--book":
+                    book = OpeningBook.open(Paths.get(args[i + 1]));
+                    break;
+                case "--evaluator":
+                    evaluator = NetworkEvaluator.open(Paths.get(args[i + 1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return new Tournament(size[0], size[1], games, threads, maxPlies, firstSpec, secondSpec, recordPath, tablebase, book, evaluator);
+    }
+
+    /**
+     * Plays all games and prints the statistics.
+     * @param out
+     */
+    public void run(PrintStream out) {
+        out.printf("%s vs %s on %dx%d, %d games on %d threads%n", first.spec, second.spec, columns, rows, games, threads);
+        long start = System.nanoTime();
+        if (recordPath != null) {
+            try {
+                recorder = new GameRecordWriter(recordPath);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(this::playGames));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+            closeRecorder();
+        }
+        report(out, System.nanoTime() - start);
+    }
+
+    /**
+     * Takes games from the shared counter until all are played; every worker has its own engines.
+     */
+    private void playGames() {
+        Engine firstEngine = first.factory.get();
+        Engine secondEngine = second.factory.get();
+        int game;
+        while ((game = nextGame.getAndIncrement()) < games) {
+            boolean firstPlaysO = game % 2 == 0;
+            Player winner = playGame(firstPlaysO ? first : second, firstPlaysO ? firstEngine : secondEngine,
+                    firstPlaysO ? second : first, firstPlaysO ? secondEngine : firstEngine);
+            if (winner == Player.NONE) {
+                draws.incrementAndGet();
+            } else if ((winner == Player.FIRST) == firstPlaysO) {
+                firstWins.incrementAndGet();
+            } else {
+                secondWins.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Plays one game from the starting position and records it if a game record file is given.
+     * @param o contestant playing O, the FIRST player.
+     * @param oEngine
+     * @param x contestant playing X, the SECOND player.
+     * @param xEngine
+     * @return the winner, or NONE if the game reached the ply limit.
+     */
+    private Player playGame(Contestant o, Engine oEngine, Contestant x, Engine xEngine) {
+        BitBoard position = new BitBoard(rows, columns);
+        Player winner = Player.NONE;
+        for (int ply = 0; ply < maxPlies && position.getWinner() == Player.NONE; ply++) {
+            SearchResult result = position.firstTurn() ? oEngine.findMove(position, o.budget) : xEngine.findMove(position, x.budget);
+            if (result.getMove() == Move.NONE) {
+                winner = position.firstTurn() ? Player.SECOND : Player.FIRST;
+                break;
+            }
+            position.makeMove(result.getMove());
+            Metrics.moveApplied();
+        }
+        if (winner == Player.NONE) {
+            winner = position.getWinner();
+        }
+        if (recorder != null) {
+            try {
+                recorder.write(position, o.spec, x.spec, winner);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Closes the game record file, if there is one.
+     */
+    private void closeRecorder() {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                recorder = null;
+            }
+        }
+    }
+
+    /**
+     * Prints the results with 95% Wilson confidence intervals of the score and of the Elo difference of A over B.
+     * @param out
+     * @param elapsedNanos
+     */
+    private void report(PrintStream out, long elapsedNanos) {
+        int wins = firstWins.get();
+        int losses = secondWins.get();
+        int drawn = draws.get();
+        int played = wins + losses + drawn;
+        double score = (wins + 0.5 * drawn) / played;
+        double z2 = Z_95 * Z_95 / played;
+        double center = (score + z2 / 2) / (1 + z2);
+        double margin = Z_95 * Math.sqrt(score * (1 - score) / played + z2 / (4 * played)) / (1 + z2);
+        out.printf("A (%s): %d wins, B (%s): %d wins, %d draws%n", first.spec, wins, second.spec, losses, drawn);
+        out.printf("score of A: %.1f%% [%.1f%%, %.1f%%] (95%%)%n", 100 * score, 100 * (center - margin), 100 * (center + margin));
+        out.printf("Elo of A over B: %.0f [%.0f, %.0f]%n", elo(score), elo(center - margin), elo(center + margin));
+        out.printf("%d games in %.1f s, %.2f games/s%n", played, elapsedNanos / 1e9, played / (elapsedNanos / 1e9));
+    }
+
+    /**
+     * Converts a score to an Elo difference.
+     * @param score
+     * @return Elo difference, infinite for a score of 0 or 1.
+     */
+    private static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Engine and time control given as "name:milliseconds" where name is ab, abn for alpha-beta with the network evaluation, or mcts.
+     */
+    private static final class Contestant {
+
+        private final String spec;
+        private final Supplier<Engine> factory;
+        private final long budget;
+
+        /**
+         * Public constructor parses the given specification.
+         * @param spec
+         * @param tablebase endgame tablebase of the alpha-beta engine, or null.
+         * @param book opening book of the alpha-beta engine, or null.
+         * @param evaluator network evaluation of the abn engine, or null.
+         */
+        public Contestant(String spec, Tablebase tablebase, OpeningBook book, NetworkEvaluator evaluator) {
+            this.spec = spec;
+            String[] parts = spec.split(":");
+            budget = parts.length > 1 ? Long.parseLong(parts[1]) : 100;
+            if (parts[0].equals("abn") && evaluator == null) {
+                throw new IllegalArgumentException("The engine abn needs a network given by --evaluator!");
+            }
+            switch (parts[0]) {
+                case "ab":
+                case "abn":
+                    factory = () -> {
+                        AlphaBetaEngine engine = new AlphaBetaEngine(new TranspositionTable(TABLE_MEGABYTES));
+                        engine.setTablebase(tablebase);
+                        if (parts[0].equals("abn")) {
+                            engine.setEvaluator(evaluator);
+                        }
+                        if (book != null) {
+                            engine.addOpeningBook(book);
+                        }
+                        return engine;
+                    };
+                    break;
+                case "mcts":
+                    factory = MctsEngine::new;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown engine: " + parts[0]);
+            }
+        }
+    }
+}
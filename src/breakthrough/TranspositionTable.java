@@ -0,0 +1,167 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package breakthrough;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size table of search results keyed by the Zobrist hash of the position.
+ * Every entry takes two longs of one preallocated array: the key XOR the data, and the data.
+ * Threads read and write without locks; an entry torn by a concurrent write fails the key check and counts as a miss.
+ * An entry of the current search is only replaced by a result of at least the same depth, or by an exact result of the same
+ * position, so shallow bounds of helper threads do not clobber deep results; an entry left over from an older search is replaced by any result.
+ * The lookups do not touch any shared counter: the searches count their probes, hits and stores themselves
+ * and add them to the counters of the table once per search.
+ * @author artur
+ */
+public final class TranspositionTable {
+
+    public static final long MISS = 0;
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    private static final int SCORE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 52;
+    private static final int BOUND_SHIFT = 59;
+    private static final int AGE_SHIFT = 61;
+
+    private final long[] entries;
+    private final int mask;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private volatile int age;
+
+    /**
+     * Public constructor allocates the largest power-of-two number of entries fitting into the given memory.
+     * @param megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        long capacity = Long.highestOneBit(Math.max(1, ((long) megabytes << 20) / 16));
+        int size = (int) Math.min(capacity, 1 << 29);
+        entries = new long[2 * size];
+        mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Starts a new search; entries of previous searches may be replaced regardless of their depth.
+     */
+    public void newSearch() {
+        age = (age + 1) & 7;
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * Looks up the given position.
+     * @param key Zobrist hash of the position.
+     * @return the packed entry, or MISS if the position is not stored.
+     */
+    public long probe(long key) {
+        int index = ((int) key & mask) << 1;
+        long data = entries[index + 1];
+        if (data == MISS || (entries[index] ^ data) != key) {
+            return MISS;
+        }
+        return data;
+    }
+
+    /**
+     * Stores the result of a search of the given position.
+     * @param key Zobrist hash of the position.
+     * @param move best move, or Move.NONE.
+     * @param score
+     * @param depth remaining depth of the search, 0 to 127.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     * @return true if the result was written, false if the entry was kept.
+     */
+    public boolean store(long key, int move, int score, int depth, int bound) {
+        int index = ((int) key & mask) << 1;
+        long old = entries[index + 1];
+        if (old != MISS && depth < depth(old) && age(old) == age && (bound != EXACT || (entries[index] ^ old) != key)) {
+            return false;
+        }
+        long data = (move & 0xFFFFFFFFL)
+                | ((score & 0xFFFFFL) << SCORE_SHIFT)
+                | ((long) (depth & 0x7F) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+        entries[index] = key ^ data;
+        entries[index + 1] = data;
+        return true;
+    }
+
+    /**
+     * Adds the probes, hits and stores a search counted to the counters of the table.
+     * @param probes
+     * @param hits
+     * @param stores results written.
+     */
+    public void addCounts(long probes, long hits, long stores) {
+        this.probes.add(probes);
+        this.hits.add(hits);
+        this.stores.add(stores);
+    }
+
+    public static int move(long entry) {
+        return (int) entry;
+    }
+
+    public static int score(long entry) {
+        return (int) (entry << (64 - SCORE_SHIFT - 20) >> (64 - 20));
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0x7F;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & 7;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Gets the share of probes that found their position.
+     * @return hits divided by probes, 0 if there were no probes.
+     */
+    public double getHitRate() {
+        long total = probes.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    @Override
+    public String toString() {
+        return getCapacity() + " entries, " + getProbes() + " probes, " + getHits() + " hits (" + Math.round(getHitRate() * 1000) / 10.0 + "%), " + getStores() + " stores";
+    }
+}